@@ -0,0 +1,295 @@
+/*
+ * www.javagl.de - Category
+ *
+ * Copyright (c) 2012-2017 Marco Hutter - http://www.javagl.de
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.javagl.category;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Package-private abstract base class for the {@link MutableCategory}
+ * implementations that store their elements in primitive arrays. It 
+ * manages the children and the listeners. The storage of the elements
+ * is implemented by the subclasses.
+ * 
+ * @param <T> The (boxed) type of the elements in this {@link Category}
+ * @param <C> The type of the children
+ */
+abstract class AbstractPrimitiveCategory<T, 
+    C extends AbstractPrimitiveCategory<T, C>> implements MutableCategory<T>
+{
+    /**
+     * The name of this category
+     */
+    private final String name;
+    
+    /**
+     * The children of this category, mapped by their names. The
+     * iteration order of this map is the order in which the 
+     * children have been added.
+     */
+    private final Map<String, C> children;
+    
+    /**
+     * An unmodifiable copy of the children of this category that is
+     * returned by {@link #getChildren()}. This is created lazily, and 
+     * set to <code>null</code> whenever the children are modified.
+     */
+    private List<C> childrenSnapshot;
+    
+    /**
+     * The parent of this category, or <code>null</code> if this category
+     * is not a child of another category
+     */
+    private C parent;
+    
+    /**
+     * The hash code of this category. This is computed lazily, and set 
+     * to <code>null</code> for this category and all its ancestors 
+     * whenever this category is modified.
+     */
+    private Integer hashCode;
+    
+    /**
+     * The hash code of the list of elements of this category. This is
+     * computed lazily, and set to <code>null</code> whenever the 
+     * elements of this category are modified.
+     */
+    private Integer elementsHashCode;
+    
+    /**
+     * The {@link CategoryListenerSupport} managing the listeners that 
+     * are attached to this category
+     */
+    final CategoryListenerSupport<T> listenerSupport;
+    
+    /**
+     * Creates a new category. 
+     * 
+     * @param name The name of the category
+     */
+    AbstractPrimitiveCategory(String name)
+    {
+        this.name = Objects.requireNonNull(name, "The name may not be null");
+        this.children = new LinkedHashMap<String, C>();
+        this.listenerSupport = new CategoryListenerSupport<T>(this);
+    }
+    
+    /**
+     * Create a new, empty child category with the given name
+     * 
+     * @param name The name
+     * @return The new child
+     */
+    abstract C createChild(String name);
+    
+    /**
+     * Returns the parent of this category, or <code>null</code> if this 
+     * category is not a child of another category
+     * 
+     * @return The parent
+     */
+    final C getParent()
+    {
+        return parent;
+    }
+    
+    /**
+     * Will be called whenever the children of this category changed
+     */
+    private void childrenChanged()
+    {
+        childrenSnapshot = null;
+        invalidateHashCodes();
+    }
+    
+    /**
+     * Will be called by subclasses whenever the elements of this 
+     * category changed
+     */
+    void elementsChanged()
+    {
+        elementsHashCode = null;
+        invalidateHashCodes();
+    }
+    
+    /**
+     * Mark the hash codes of this category and all its ancestors as 
+     * being invalid. This can stop at the first category where the 
+     * hash code is already invalid.
+     */
+    private void invalidateHashCodes()
+    {
+        AbstractPrimitiveCategory<T, C> current = this;
+        while (current != null && current.hashCode != null)
+        {
+            current.hashCode = null;
+            current = current.parent;
+        }
+    }
+    
+    @Override
+    public final String getName()
+    {
+        return name;
+    }
+
+    @Override
+    public final C addChild(String name)
+    {
+        Objects.requireNonNull(name, "The name may not be null");
+        C present = getChild(name);
+        if (present != null)
+        {
+            return present;
+        }
+        C child = createChild(name);
+        children.put(name, child);
+        childrenChanged();
+        child.addCategoryListener(listenerSupport.getForwardingListener());
+        AbstractPrimitiveCategory<T, C> attached = child;
+        attached.parent = self();
+        listenerSupport.fireChildAdded(child);
+        return child;
+    }
+    
+    /**
+     * Returns this category, as an instance of the type of the children
+     * 
+     * @return This category
+     */
+    abstract C self();
+    
+    /**
+     * Detach the given child, which has already been removed from the
+     * {@link #children}, from this category
+     * 
+     * @param child The child
+     */
+    private void detachChild(C child)
+    {
+        child.removeCategoryListener(
+            listenerSupport.getForwardingListener());
+        AbstractPrimitiveCategory<T, C> detached = child;
+        detached.parent = null;
+    }
+    
+    @Override
+    public final C removeChild(String name)
+    {
+        C removedChild = children.remove(name);
+        if (removedChild != null)
+        {
+            childrenChanged();
+            detachChild(removedChild);
+            listenerSupport.fireChildRemoved(removedChild);
+        }
+        return removedChild;
+    }
+    
+    @Override
+    public final void removeAllChildren()
+    {
+        if (children.isEmpty())
+        {
+            return;
+        }
+        List<C> removedChildren = getChildren();
+        children.clear();
+        childrenChanged();
+        for (C child : removedChildren)
+        {
+            detachChild(child);
+        }
+        listenerSupport.fireChildrenRemoved(removedChildren);
+    }
+
+    @Override
+    public final C getChild(String name)
+    {
+        return children.get(name);
+    }
+    
+    @Override
+    public final List<C> getChildren()
+    {
+        if (childrenSnapshot == null)
+        {
+            childrenSnapshot = Collections.unmodifiableList(
+                new ArrayList<C>(children.values()));
+        }
+        return childrenSnapshot;
+    }
+    
+    @Override
+    public final void addCategoryListener(CategoryListener<T> listener)
+    {
+        listenerSupport.addCategoryListener(listener);
+    }
+
+    @Override
+    public final void addCategoryListener(
+        CategoryListener<T> listener, CategoryEventFilter filter)
+    {
+        listenerSupport.addCategoryListener(listener, filter);
+    }
+
+    @Override
+    public final void removeCategoryListener(CategoryListener<T> listener)
+    {
+        listenerSupport.removeCategoryListener(listener);
+    }
+
+    @Override
+    public final String toString()
+    {
+        return name;
+    }
+
+    @Override
+    public final int hashCode()
+    {
+        if (hashCode == null)
+        {
+            if (elementsHashCode == null)
+            {
+                elementsHashCode = getElements().hashCode();
+            }
+            hashCode = CategoryEquality.hashCode(this, elementsHashCode);
+        }
+        return hashCode;
+    }
+
+    @Override
+    public final boolean equals(Object object)
+    {
+        return CategoryEquality.equals(this, object);
+    }
+}
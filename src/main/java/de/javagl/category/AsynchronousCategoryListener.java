@@ -0,0 +1,375 @@
+/*
+ * www.javagl.de - Category
+ *
+ * Copyright (c) 2012-2017 Marco Hutter - http://www.javagl.de
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.javagl.category;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Package-private implementation of a {@link CategoryListener} that
+ * passes all events to a delegate listener, using an executor.
+ * See {@link Categories#asynchronous(CategoryListener, Executor, int, 
+ * EventOverflowPolicy)}.
+ * 
+ * @param <T> The type of the elements in the {@link Category}
+ */
+final class AsynchronousCategoryListener<T> implements CategoryListener<T>
+{
+    /**
+     * An event that is waiting in the queue
+     * 
+     * @param <T> The type of the elements in the {@link Category}
+     */
+    private static final class QueuedEvent<T>
+    {
+        /**
+         * The type of the event
+         */
+        private final CategoryEventType type;
+        
+        /**
+         * The event
+         */
+        private final CategoryEvent<T> event;
+        
+        /**
+         * Creates a new instance
+         * 
+         * @param type The type of the event
+         * @param event The event
+         */
+        QueuedEvent(CategoryEventType type, CategoryEvent<T> event)
+        {
+            this.type = type;
+            this.event = event;
+        }
+    }
+    
+    /**
+     * The listener that the events are passed to
+     */
+    private final CategoryListener<T> delegate;
+    
+    /**
+     * The executor that passes the events to the delegate
+     */
+    private final Executor executor;
+    
+    /**
+     * The maximum number of events in the queue
+     */
+    private final int capacity;
+    
+    /**
+     * The {@link EventOverflowPolicy}
+     */
+    private final EventOverflowPolicy overflowPolicy;
+    
+    /**
+     * The queue of events that have not been passed to the delegate yet
+     */
+    private final Deque<QueuedEvent<T>> queue;
+    
+    /**
+     * The lock protecting the queue
+     */
+    private final Lock lock;
+    
+    /**
+     * The condition that is signalled when an event was removed from
+     * the queue
+     */
+    private final Condition notFull;
+    
+    /**
+     * Whether a task for passing the events to the delegate has been
+     * passed to the executor and is not yet finished
+     */
+    private boolean scheduled;
+    
+    /**
+     * The task that passes the queued events to the delegate
+     */
+    private final Runnable dispatchTask = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            dispatchQueuedEvents();
+        }
+    };
+    
+    /**
+     * Creates a new instance
+     * 
+     * @param delegate The listener that the events are passed to
+     * @param executor The executor that passes the events to the delegate
+     * @param capacity The maximum number of events in the queue
+     * @param overflowPolicy The {@link EventOverflowPolicy}
+     * @throws IllegalArgumentException If the capacity is not positive
+     */
+    AsynchronousCategoryListener(CategoryListener<T> delegate, 
+        Executor executor, int capacity, EventOverflowPolicy overflowPolicy)
+    {
+        this.delegate = Objects.requireNonNull(
+            delegate, "The delegate may not be null");
+        this.executor = Objects.requireNonNull(
+            executor, "The executor may not be null");
+        this.overflowPolicy = Objects.requireNonNull(
+            overflowPolicy, "The overflowPolicy may not be null");
+        if (capacity <= 0)
+        {
+            throw new IllegalArgumentException(
+                "The capacity must be positive, but is " + capacity);
+        }
+        this.capacity = capacity;
+        this.queue = new ArrayDeque<QueuedEvent<T>>();
+        this.lock = new ReentrantLock();
+        this.notFull = lock.newCondition();
+    }
+    
+    @Override
+    public void elementsAdded(CategoryEvent<T> event)
+    {
+        enqueue(CategoryEventType.ELEMENTS_ADDED, event);
+    }
+
+    @Override
+    public void elementsRemoved(CategoryEvent<T> event)
+    {
+        enqueue(CategoryEventType.ELEMENTS_REMOVED, event);
+    }
+
+    @Override
+    public void childAdded(CategoryEvent<T> event)
+    {
+        enqueue(CategoryEventType.CHILD_ADDED, event);
+    }
+
+    @Override
+    public void childRemoved(CategoryEvent<T> event)
+    {
+        enqueue(CategoryEventType.CHILD_REMOVED, event);
+    }
+    
+    /**
+     * Add the given event to the queue, handling a full queue according
+     * to the {@link #overflowPolicy}, and make sure that the queued
+     * events are dispatched
+     * 
+     * @param type The type of the event
+     * @param event The event
+     * @throws RejectedExecutionException If the executor rejected the
+     * dispatching of the events. In this case, the given event is not
+     * queued.
+     */
+    private void enqueue(CategoryEventType type, CategoryEvent<T> event)
+    {
+        // Make sure that the elements are copied before the event 
+        // is passed to another thread
+        event.getElements();
+        lock.lock();
+        try
+        {
+            while (queue.size() >= capacity)
+            {
+                if (overflowPolicy == EventOverflowPolicy.COALESCE &&
+                    coalesceWithLast(type, event))
+                {
+                    scheduleDispatch();
+                    return;
+                }
+                scheduleDispatch();
+                notFull.awaitUninterruptibly();
+            }
+            queue.addLast(new QueuedEvent<T>(type, event));
+            try
+            {
+                scheduleDispatch();
+            }
+            catch (RejectedExecutionException e)
+            {
+                queue.pollLast();
+                throw e;
+            }
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Make sure that the dispatching of the queued events is scheduled
+     * in the executor. This must be called while holding the lock.
+     * 
+     * @throws RejectedExecutionException If the executor rejected the
+     * dispatching of the events
+     */
+    private void scheduleDispatch()
+    {
+        if (scheduled)
+        {
+            return;
+        }
+        // The flag has to be set before the task is passed to the 
+        // executor, because the executor may run the task immediately
+        scheduled = true;
+        try
+        {
+            executor.execute(dispatchTask);
+        }
+        catch (RejectedExecutionException e)
+        {
+            scheduled = false;
+            throw e;
+        }
+    }
+    
+    /**
+     * Try to merge the given event into the last event of the queue. 
+     * This must be called while holding the lock.
+     * 
+     * @param type The type of the event
+     * @param event The event
+     * @return Whether the event could be merged
+     */
+    private boolean coalesceWithLast(CategoryEventType type, 
+        CategoryEvent<T> event)
+    {
+        QueuedEvent<T> last = queue.peekLast();
+        if (last == null || last.type != type || 
+            last.event.getCategory() != event.getCategory())
+        {
+            return false;
+        }
+        Set<T> elements = new LinkedHashSet<T>(last.event.getElements());
+        elements.addAll(event.getElements());
+        List<Category<T>> children = 
+            new ArrayList<Category<T>>(last.event.getChildren());
+        children.addAll(event.getChildren());
+        CategoryEvent<T> merged = new CategoryEvent<T>(
+            event.getCategory(), elements, children);
+        queue.pollLast();
+        queue.addLast(new QueuedEvent<T>(type, merged));
+        return true;
+    }
+    
+    /**
+     * Pass all queued events to the delegate, in the order in which
+     * they have been queued
+     */
+    private void dispatchQueuedEvents()
+    {
+        try
+        {
+            while (true)
+            {
+                QueuedEvent<T> queuedEvent = null;
+                lock.lock();
+                try
+                {
+                    queuedEvent = queue.pollFirst();
+                    if (queuedEvent == null)
+                    {
+                        scheduled = false;
+                        return;
+                    }
+                    notFull.signalAll();
+                }
+                finally
+                {
+                    lock.unlock();
+                }
+                dispatch(queuedEvent);
+            }
+        }
+        catch (RuntimeException | Error e)
+        {
+            // The delegate threw an exception. Make sure that the
+            // remaining events are still dispatched. If this is not
+            // possible, the next event that is queued will try it again
+            lock.lock();
+            try
+            {
+                executor.execute(dispatchTask);
+            }
+            catch (RejectedExecutionException rejected)
+            {
+                scheduled = false;
+                notFull.signalAll();
+                e.addSuppressed(rejected);
+            }
+            finally
+            {
+                lock.unlock();
+            }
+            throw e;
+        }
+    }
+    
+    /**
+     * Pass the given event to the delegate
+     * 
+     * @param queuedEvent The event
+     */
+    private void dispatch(QueuedEvent<T> queuedEvent)
+    {
+        CategoryEvent<T> event = queuedEvent.event;
+        switch (queuedEvent.type)
+        {
+            case ELEMENTS_ADDED:
+                delegate.elementsAdded(event);
+                break;
+                
+            case ELEMENTS_REMOVED:
+                delegate.elementsRemoved(event);
+                break;
+                
+            case CHILD_ADDED:
+                delegate.childAdded(event);
+                break;
+                
+            case CHILD_REMOVED:
+                delegate.childRemoved(event);
+                break;
+                
+            default:
+                break;
+        }
+    }
+}
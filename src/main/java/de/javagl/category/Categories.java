@@ -1,226 +1,1047 @@
-/*
- * www.javagl.de - Category
- *
- * Copyright (c) 2012-2017 Marco Hutter - http://www.javagl.de
- * 
- * Permission is hereby granted, free of charge, to any person
- * obtaining a copy of this software and associated documentation
- * files (the "Software"), to deal in the Software without
- * restriction, including without limitation the rights to use,
- * copy, modify, merge, publish, distribute, sublicense, and/or sell
- * copies of the Software, and to permit persons to whom the
- * Software is furnished to do so, subject to the following
- * conditions:
- * 
- * The above copyright notice and this permission notice shall be
- * included in all copies or substantial portions of the Software.
- * 
- * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
- * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
- * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
- * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
- * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
- * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
- * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
- * OTHER DEALINGS IN THE SOFTWARE.
- */
-package de.javagl.category;
-
-import java.util.LinkedHashSet;
-import java.util.List;
-import java.util.Set;
-
-/**
- * Methods related to {@link Category} instances
- */
-public class Categories
-{
-    /**
-     * Creates a new instance of a {@link CategoriesBuilder}, 
-     * using the given name for the root category.
-     * 
-     * @param <T> The type of the elements in the {@link Category}
-     *  
-     * @param name The name of the root {@link Category}
-     * @return The {@link CategoriesBuilder} instance
-     */
-    public static <T> CategoriesBuilder<T> createBuilder(String name)
-    {
-        return new CategoriesBuilder<T>(name);
-    }
-    
-    /**
-     * Create a new {@link MutableCategory} with the given name
-     * 
-     * @param <T> The type of the elements in the {@link Category}
-     * 
-     * @param name The name of the {@link Category}
-     * @return The new {@link MutableCategory}
-     */
-    public static <T> MutableCategory<T> create(String name)
-    {
-        return new DefaultCategory<T>(name);
-    }
-
-    
-    
-    /**
-     * Returns a new set containing all elements of the given {@link Category}
-     * and its children.
-     * 
-     * @param <T> The type of the elements in the {@link Category}
-     * 
-     * @param category The category to collect all elements from
-     * @return The set of all elements of the given category and its children
-     */
-    public static <T> Set<T> getAllElements(Category<T> category)
-    {
-        Set<T> result = new LinkedHashSet<T>();
-        getAllElements(category, result);
-        return result;
-    }
-    
-    /**
-     * Add all elements of the given category and its children to the
-     * given result set, recursively
-     * 
-     * @param <T> The type of the elements in the {@link Category}
-     * 
-     * @param category The category to collect all elements from
-     * @param result The resulting set storing the elements
-     */
-    private static <T> void getAllElements(Category<T> category, Set<T> result)
-    {
-        result.addAll(category.getElements());
-        for (Category<T> child : category.getChildren())
-        {
-            getAllElements(child, result);
-        }
-    }
-    
-    /**
-     * Merges the given source {@link Category} into the given target 
-     * {@link Category}. This merge will be performed recursively 
-     * for all sub-categories. 
-     * 
-     * @param <T> The type of the elements in the {@link Category}
-     * 
-     * @param target The {@link MutableCategory} to which the other will
-     * be added 
-     * @param source The source {@link Category}
-     */
-    public static <T> void mergeRecursively(
-        MutableCategory<T> target, 
-        Category<? extends T> source)
-    {
-        target.addElements(source.getElements());
-        for (Category<? extends T> sourceChild : source.getChildren())
-        {
-            String name = sourceChild.getName();
-            MutableCategory<T> targetChild = target.getChild(name);
-            if (targetChild == null)
-            {
-                targetChild = target.addChild(name);
-            }
-            mergeRecursively(targetChild, sourceChild);
-        }
-    }
-    
-    
-    /**
-     * Clean up the given {@link Category}. That is, this method will 
-     * recursively remove all categories from the given hierarchy that 
-     * have neither {@link Category#getChildren() children} nor 
-     * {@link Category#getElements() elements}. 
-     *  
-     * @param category The {@link Category} to clean up
-     */
-    public static void removeEmptyCategories(MutableCategory<?> category)
-    {
-        List<? extends MutableCategory<?>> children = category.getChildren();
-        for (MutableCategory<?> child : children)
-        {
-            removeEmptyCategories(child);
-        }
-        for (MutableCategory<?> child : children)
-        {
-            if (child.getChildren().isEmpty() && 
-                child.getElements().isEmpty())
-            {
-                category.removeChild(child.getName());
-            }
-        }
-    }
-    
-    /**
-     * Creates a formatted, multi-line string representation of the given 
-     * {@link Category}. <br>
-     * <br>
-     * <b>The exact format of this string is unspecified!</b><br>
-     * <br>
-     * This method is mainly intended for debugging.
-     * 
-     * @param category The {@link Category}
-     * @return The string representation
-     */
-    public static String toFormattedString(Category<?> category)
-    {
-        return toFormattedString(category, "");
-    }
-    
-    /**
-     * Recursive method for the formatted string creation
-     * 
-     * @param category The {@link Category}
-     * @param indent The indentation string
-     * @return The string
-     */
-    private static String toFormattedString(
-        Category<?> category, String indent)
-    {
-        if (category == null)
-        {
-            return "null";
-        }
-        StringBuilder sb = new StringBuilder();
-        String i = indent;
-        if (indent.length() >= 2)
-        {
-            i = indent.substring(0, indent.length() - 2) + "+-";
-        }
-        sb.append(i + category.getName()).append("\n");
-        if (!category.getElements().isEmpty())
-        {
-            for (Object element : category.getElements())
-            {
-                sb.append(indent + "|-" + element).append("\n");
-            }
-        }
-        int numChildren = category.getChildren().size();
-        if (numChildren > 0)
-        {
-            int counter = 0;
-            for (Category<?> child : category.getChildren())
-            {
-                if (counter == numChildren - 1)
-                {
-                    sb.append(toFormattedString(child, indent + "  "));
-                }
-                else
-                {
-                    sb.append(toFormattedString(child, indent + "| "));
-                }
-                counter++;
-            }
-        }
-        return sb.toString();
-    }
-
-    /**
-     * Private constructor to prevent instantiation
-     */
-    private Categories()
-    {
-        // Private constructor to prevent instantiation
-    }
-}
+/*
+ * www.javagl.de - Category
+ *
+ * Copyright (c) 2012-2017 Marco Hutter - http://www.javagl.de
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.javagl.category;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.stream.Collector;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Methods related to {@link Category} instances
+ */
+public class Categories
+{
+    /**
+     * Creates a new instance of a {@link CategoriesBuilder}, 
+     * using the given name for the root category.
+     * 
+     * @param <T> The type of the elements in the {@link Category}
+     *  
+     * @param name The name of the root {@link Category}
+     * @return The {@link CategoriesBuilder} instance
+     */
+    public static <T> CategoriesBuilder<T> createBuilder(String name)
+    {
+        return new CategoriesBuilder<T>(name);
+    }
+    
+    /**
+     * Create a new {@link CategoriesBuilder} with the given name for 
+     * the root category. The names of all categories that are created
+     * with the builder will be replaced by their canonical instances 
+     * from the given {@link CategoryNameDictionary}.
+     * 
+     * @param <T> The type of the elements in the {@link Category}
+     * 
+     * @param name The name of the root {@link Category}
+     * @param nameDictionary The {@link CategoryNameDictionary}
+     * @return The new {@link CategoriesBuilder}
+     */
+    public static <T> CategoriesBuilder<T> createBuilder(
+        String name, CategoryNameDictionary nameDictionary)
+    {
+        return new CategoriesBuilder<T>(name, nameDictionary);
+    }
+    
+    /**
+     * Create a new {@link MutableCategory} with the given name
+     * 
+     * @param <T> The type of the elements in the {@link Category}
+     * 
+     * @param name The name of the {@link Category}
+     * @return The new {@link MutableCategory}
+     */
+    public static <T> MutableCategory<T> create(String name)
+    {
+        return new DefaultCategory<T>(name);
+    }
+    
+    /**
+     * Create a new {@link MutableCategory} with the given name. The names
+     * of the returned category and all children that are added to it 
+     * will be replaced by their canonical instances from the given
+     * {@link CategoryNameDictionary}.
+     * 
+     * @param <T> The type of the elements in the {@link Category}
+     * 
+     * @param name The name of the {@link Category}
+     * @param nameDictionary The {@link CategoryNameDictionary}
+     * @return The new {@link MutableCategory}
+     */
+    public static <T> MutableCategory<T> create(
+        String name, CategoryNameDictionary nameDictionary)
+    {
+        Objects.requireNonNull(nameDictionary, 
+            "The nameDictionary may not be null");
+        return new DefaultCategory<T>(name, false, nameDictionary);
+    }
+    
+    /**
+     * Create a new {@link CategoryCodec} that uses the given 
+     * {@link CategoryElementSerializer} for writing and reading the 
+     * elements of {@link Category} hierarchies
+     * 
+     * @param <T> The type of the elements in the {@link Category}
+     * 
+     * @param serializer The {@link CategoryElementSerializer}
+     * @return The new {@link CategoryCodec}
+     */
+    public static <T> CategoryCodec<T> createCodec(
+        CategoryElementSerializer<T> serializer)
+    {
+        return new CategoryCodec<T>(serializer);
+    }
+    
+    /**
+     * Create a new {@link CategoryImporter} that imports elements from 
+     * text into {@link MutableCategory} hierarchies, where each line 
+     * consists of a path and an element, separated by a tab character. 
+     * The given function will receive the string after the tab 
+     * character, and return the element.
+     * 
+     * @param <T> The type of the elements in the {@link Category}
+     * 
+     * @param elementParser The function that creates the elements
+     * @return The new {@link CategoryImporter}
+     */
+    public static <T> CategoryImporter<T> createImporter(
+        Function<? super String, ? extends T> elementParser)
+    {
+        return new CategoryImporter<T>(elementParser);
+    }
+    
+    /**
+     * Create a new, empty {@link CategoryNameDictionary}, which may be 
+     * shared by multiple {@link Category} hierarchies
+     * 
+     * @return The new {@link CategoryNameDictionary}
+     */
+    public static CategoryNameDictionary createNameDictionary()
+    {
+        return new CategoryNameDictionary();
+    }
+    
+    /**
+     * Create a new thread-safe {@link MutableCategory} with the given 
+     * name. All children that are added to the returned category will 
+     * also be thread-safe.<br>
+     * <br>
+     * Reading the children or elements of the returned category does
+     * not require locking. Modifications of different categories in 
+     * the hierarchy do not contend with each other. Adding elements 
+     * takes amortized time that is proportional to the number of added
+     * elements. Removing elements, and adding or removing children, 
+     * creates a copy of the list of elements or children of the 
+     * modified category, so these modifications should preferably 
+     * be done in bulk.<br>
+     * <br>
+     * The events for a modification are fired by the modifying thread, 
+     * while the modified category is locked. Listeners receive the 
+     * events from one category in the order in which the modifications 
+     * have been performed. Listeners that are attached to one category 
+     * may receive the events from different children concurrently, 
+     * and therefore have to be thread-safe. Listeners should not 
+     * modify other categories of the same hierarchy.
+     * 
+     * @param <T> The type of the elements in the {@link Category}
+     * 
+     * @param name The name of the {@link Category}
+     * @return The new {@link MutableCategory}
+     */
+    public static <T> MutableCategory<T> createConcurrent(String name)
+    {
+        return new ConcurrentCategory<T>(name);
+    }
+    
+    /**
+     * Create a new {@link MutableCategory} with the given name, which
+     * stores its elements in an insertion-ordered set. <br>
+     * <br>
+     * Each element can be contained at most once in the returned 
+     * category. Checking whether an element is 
+     * {@link Category#containsElement(Object) contained}, and removing
+     * elements can be done in constant time. The same applies to all 
+     * children that are added to the returned category.
+     * 
+     * @param <T> The type of the elements in the {@link Category}
+     * 
+     * @param name The name of the {@link Category}
+     * @return The new {@link MutableCategory}
+     */
+    public static <T> MutableCategory<T> createWithUniqueElements(String name)
+    {
+        return new DefaultCategory<T>(name, true);
+    }
+    
+    /**
+     * Create a new {@link IntCategory} with the given name, which stores 
+     * its <code>int</code> elements in a primitive array. All children 
+     * that are added to the returned category will be 
+     * {@link IntCategory} instances as well.
+     * 
+     * @param name The name of the {@link Category}
+     * @return The new {@link IntCategory}
+     */
+    public static IntCategory createIntCategory(String name)
+    {
+        return new DefaultIntCategory(name);
+    }
+    
+    /**
+     * Create a new {@link LongCategory} with the given name, which stores 
+     * its <code>long</code> elements in a primitive array. All children 
+     * that are added to the returned category will be 
+     * {@link LongCategory} instances as well.
+     * 
+     * @param name The name of the {@link Category}
+     * @return The new {@link LongCategory}
+     */
+    public static LongCategory createLongCategory(String name)
+    {
+        return new DefaultLongCategory(name);
+    }
+
+    
+    
+    /**
+     * Creates a new {@link CategoryIndex} for the given {@link Category}
+     * hierarchy. The index will allow looking up the categories that
+     * contain a certain element, and will be updated as the hierarchy
+     * changes.
+     * 
+     * @param <T> The type of the elements in the {@link Category}
+     * 
+     * @param category The root {@link Category}
+     * @return The {@link CategoryIndex}
+     */
+    public static <T> CategoryIndex<T> createIndex(Category<T> category)
+    {
+        return new CategoryIndex<T>(category);
+    }
+    
+    /**
+     * Creates a new {@link CategoryPathResolver} for the given 
+     * {@link MutableCategory} hierarchy. The resolver will cache the
+     * results of resolving paths in the hierarchy.
+     * 
+     * @param <T> The type of the elements in the {@link Category}
+     * 
+     * @param category The root {@link MutableCategory}
+     * @return The {@link CategoryPathResolver}
+     */
+    public static <T> CategoryPathResolver<T> createPathResolver(
+        MutableCategory<T> category)
+    {
+        return new CategoryPathResolver<T>(category);
+    }
+    
+    /**
+     * Returns the descendant of the given {@link Category} that is
+     * reached by following the given path. The path consists of the
+     * names of the categories, separated by a <code>'/'</code> slash.
+     * For example, the path <code>"a/b/c"</code> refers to the 
+     * child <code>"c"</code> of the child <code>"b"</code> of the 
+     * child <code>"a"</code> of the given category. The empty path 
+     * refers to the given category itself.
+     * 
+     * @param <T> The type of the elements in the {@link Category}
+     * 
+     * @param category The {@link Category}
+     * @param path The path
+     * @return The {@link Category} at the given path, or <code>null</code>
+     * if there is no category at the given path
+     * @throws IllegalArgumentException If the path contains an empty name
+     */
+    public static <T> Category<T> resolve(Category<T> category, String path)
+    {
+        Category<T> current = category;
+        for (String name : splitPath(path))
+        {
+            current = current.getChild(name);
+            if (current == null)
+            {
+                return null;
+            }
+        }
+        return current;
+    }
+    
+    /**
+     * Returns the descendant of the given {@link MutableCategory} that is
+     * reached by following the given path. See 
+     * {@link #resolve(Category, String)} for details.
+     * 
+     * @param <T> The type of the elements in the {@link Category}
+     * 
+     * @param category The {@link MutableCategory}
+     * @param path The path
+     * @return The {@link MutableCategory} at the given path, or 
+     * <code>null</code> if there is no category at the given path
+     * @throws IllegalArgumentException If the path contains an empty name
+     */
+    public static <T> MutableCategory<T> resolve(
+        MutableCategory<T> category, String path)
+    {
+        return resolve(category, splitPath(path));
+    }
+    
+    /**
+     * Returns the descendant of the given {@link MutableCategory} that 
+     * is reached by following the given path, creating all categories
+     * along the path that do not exist yet. See 
+     * {@link #resolve(Category, String)} for details about the path.<br>
+     * <br>
+     * For categories that have been created with the methods in this 
+     * class, all missing categories will be created before they are
+     * attached to the hierarchy, so that only a single 
+     * {@link CategoryListener#childAdded(CategoryEvent)} event will 
+     * be fired.
+     * 
+     * @param <T> The type of the elements in the {@link Category}
+     * 
+     * @param category The {@link MutableCategory}
+     * @param path The path
+     * @return The {@link MutableCategory} at the given path
+     * @throws IllegalArgumentException If the path contains an empty name
+     */
+    public static <T> MutableCategory<T> ensurePath(
+        MutableCategory<T> category, String path)
+    {
+        return ensurePath(category, splitPath(path));
+    }
+    
+    /**
+     * Returns the descendant of the given {@link MutableCategory} that 
+     * is reached by following the given names, or <code>null</code>
+     * if there is no such descendant.
+     * 
+     * @param <T> The type of the elements in the {@link Category}
+     * 
+     * @param category The {@link MutableCategory}
+     * @param names The names
+     * @return The {@link MutableCategory}, or <code>null</code>
+     */
+    static <T> MutableCategory<T> resolve(
+        MutableCategory<T> category, List<String> names)
+    {
+        MutableCategory<T> current = category;
+        for (String name : names)
+        {
+            current = current.getChild(name);
+            if (current == null)
+            {
+                return null;
+            }
+        }
+        return current;
+    }
+    
+    /**
+     * Returns the descendant of the given {@link MutableCategory} that 
+     * is reached by following the given names, creating all categories
+     * that do not exist yet.
+     * 
+     * @param <T> The type of the elements in the {@link Category}
+     * 
+     * @param category The {@link MutableCategory}
+     * @param names The names
+     * @return The {@link MutableCategory}
+     */
+    static <T> MutableCategory<T> ensurePath(
+        MutableCategory<T> category, List<String> names)
+    {
+        MutableCategory<T> current = category;
+        for (int i = 0; i < names.size(); i++)
+        {
+            MutableCategory<T> child = current.getChild(names.get(i));
+            if (child == null)
+            {
+                if (current instanceof DefaultCategory<?>)
+                {
+                    DefaultCategory<T> defaultCategory = 
+                        (DefaultCategory<T>) current;
+                    return defaultCategory.addChildChain(names, i);
+                }
+                child = current.addChild(names.get(i));
+            }
+            current = child;
+        }
+        return current;
+    }
+    
+    /**
+     * Split the given path into the names of the categories, at each
+     * <code>'/'</code> slash
+     * 
+     * @param path The path
+     * @return The names
+     * @throws IllegalArgumentException If the path contains an empty name
+     */
+    static List<String> splitPath(String path)
+    {
+        Objects.requireNonNull(path, "The path may not be null");
+        List<String> names = new ArrayList<String>();
+        if (path.isEmpty())
+        {
+            return names;
+        }
+        int start = 0;
+        while (true)
+        {
+            int end = path.indexOf('/', start);
+            if (end == -1)
+            {
+                end = path.length();
+            }
+            if (end == start)
+            {
+                throw new IllegalArgumentException(
+                    "The path contains an empty name: " + path);
+            }
+            names.add(path.substring(start, end));
+            if (end == path.length())
+            {
+                return names;
+            }
+            start = end + 1;
+        }
+    }
+    
+    /**
+     * Returns an immutable snapshot of the given {@link Category} and
+     * all its descendants. The returned category will never change, 
+     * and may therefore be shared among threads without 
+     * synchronization.<br>
+     * <br>
+     * For categories that have been created with {@link #create(String)}
+     * or {@link #createWithUniqueElements(String)}, the snapshot is
+     * cached: When another snapshot is taken after the hierarchy was 
+     * modified, then the new snapshot will share all parts of the 
+     * previous snapshot that have not been modified. Creating the new 
+     * snapshot then only requires time that is proportional to the 
+     * modified parts of the hierarchy. Note that these categories are 
+     * not thread-safe, so the snapshot has to be taken by the thread
+     * that modifies the hierarchy.
+     * 
+     * @param <T> The type of the elements in the {@link Category}
+     * 
+     * @param category The {@link Category}
+     * @return The immutable snapshot
+     */
+    public static <T> Category<T> snapshot(Category<T> category)
+    {
+        Objects.requireNonNull(category, "The category may not be null");
+        return ImmutableCategory.copyOf(category);
+    }
+    
+    /**
+     * Creates a compact, immutable copy of the given {@link Category}
+     * hierarchy. <br>
+     * <br>
+     * The names, the structure and the elements of the whole hierarchy
+     * are stored in a few flat arrays. The categories are lightweight 
+     * views on these arrays, which are created on demand, for example, 
+     * when calling {@link Category#getChildren()}. This requires only a 
+     * fraction of the memory of a hierarchy that consists of 
+     * {@link MutableCategory} instances, and is intended for very large 
+     * hierarchies that are mainly read. Children are looked up by name 
+     * in constant time, and the hash codes of all categories are 
+     * computed when the copy is created.<br>
+     * <br>
+     * Like a {@link #snapshot(Category) snapshot}, the returned category
+     * may be shared among threads without synchronization, and listeners
+     * that are added to it will never be notified. The categories of the
+     * returned hierarchy are not necessarily identical when they are 
+     * obtained repeatedly, but they are always equal. 
+     * 
+     * @param <T> The type of the elements in the {@link Category}
+     * 
+     * @param category The root {@link Category}
+     * @return The compact copy of the {@link Category}
+     */
+    public static <T> Category<T> compact(Category<T> category)
+    {
+        Objects.requireNonNull(category, "The category may not be null");
+        if (category instanceof CompactCategory<?>)
+        {
+            CompactCategory<T> compactCategory = 
+                (CompactCategory<T>) category;
+            if (compactCategory.isRoot())
+            {
+                return compactCategory;
+            }
+        }
+        return CompactCategoryTree.create(category).getRoot();
+    }
+    
+    /**
+     * Creates a {@link CategoryListener} that passes all events to the
+     * given delegate listener asynchronously, using the given executor.
+     * The returned listener may then be added to a {@link Category}.<br>
+     * <br>
+     * The events are stored in a queue with the given capacity, and 
+     * passed to the delegate in the order in which they have been fired.
+     * At most one task for passing events to the delegate will be 
+     * executed with the given executor at any time. The executor may,
+     * for example, be a thread pool, or an executor that uses a new 
+     * virtual thread for each task. When the queue is full, the given 
+     * {@link EventOverflowPolicy} determines whether the thread that 
+     * fired the event is blocked, or whether the event is coalesced with
+     * the last queued event.<br>
+     * <br>
+     * Note that the delegate may receive the events when the category 
+     * has already been modified further. <br>
+     * <br>
+     * If the executor rejects the task for passing the events to the
+     * delegate, then the <code>RejectedExecutionException</code> will 
+     * be passed to the thread that fired the event, and the event will 
+     * not be queued.
+     * 
+     * @param <T> The type of the elements in the {@link Category}
+     * 
+     * @param delegate The listener that the events are passed to
+     * @param executor The executor that passes the events to the delegate
+     * @param capacity The maximum number of events in the queue
+     * @param overflowPolicy The {@link EventOverflowPolicy}
+     * @return The asynchronous {@link CategoryListener}
+     * @throws IllegalArgumentException If the capacity is not positive
+     */
+    public static <T> CategoryListener<T> asynchronous(
+        CategoryListener<T> delegate, Executor executor, int capacity, 
+        EventOverflowPolicy overflowPolicy)
+    {
+        return new AsynchronousCategoryListener<T>(
+            delegate, executor, capacity, overflowPolicy);
+    }
+    
+    /**
+     * Returns a <code>Collector</code> that groups the elements of a 
+     * stream into a new {@link MutableCategory} hierarchy. The given 
+     * function assigns a path to each element, and the element will be 
+     * added to the category at this path, relative to the root category.
+     * See {@link #resolve(Category, String)} for details about the 
+     * format of the paths. An empty path refers to the root category.
+     * <br>
+     * <br>
+     * For ordered streams, the elements of each category will be in 
+     * encounter order. The categories are created in the order in which
+     * their paths are encountered. Parallel streams build partial 
+     * hierarchies concurrently, and merge them structurally, adopting 
+     * subtrees that only exist in one partial hierarchy without copying
+     * them. 
+     * 
+     * @param <T> The type of the elements in the {@link Category}
+     * 
+     * @param pathFunction The function that assigns a path to each 
+     * element
+     * @param rootName The name of the root category
+     * @return The collector
+     * @throws IllegalArgumentException If a path contains an empty name,
+     * when the collector is used
+     */
+    public static <T> Collector<T, ?, MutableCategory<T>> groupingBy(
+        Function<? super T, String> pathFunction, String rootName)
+    {
+        return new CategoryGroupingCollector<T>(pathFunction, rootName);
+    }
+    
+    /**
+     * Returns a new set containing all elements of the given {@link Category}
+     * and its children.
+     * 
+     * @param <T> The type of the elements in the {@link Category}
+     * 
+     * @param category The category to collect all elements from
+     * @return The set of all elements of the given category and its children
+     */
+    public static <T> Set<T> getAllElements(Category<T> category)
+    {
+        Set<T> result = new LinkedHashSet<T>();
+        getAllElements(category, result);
+        return result;
+    }
+    
+    /**
+     * Returns a new, sorted array containing all distinct elements of 
+     * the given {@link IntCategory} and its children, without boxing 
+     * the elements
+     * 
+     * @param category The category to collect all elements from
+     * @return The array of all elements of the given category and its 
+     * children
+     */
+    public static int[] getAllIntElements(IntCategory category)
+    {
+        int[] array = new int[countAllElements(category)];
+        getAllIntElements(category, array, 0);
+        Arrays.sort(array);
+        int n = 0;
+        for (int i = 0; i < array.length; i++)
+        {
+            if (n == 0 || array[n - 1] != array[i])
+            {
+                array[n] = array[i];
+                n++;
+            }
+        }
+        return Arrays.copyOf(array, n);
+    }
+    
+    /**
+     * Write all elements of the given category and its children into
+     * the given array, starting at the given index, recursively
+     * 
+     * @param category The category to collect all elements from
+     * @param array The array
+     * @param index The index where the first element should be written
+     * @return The index after the last element that was written
+     */
+    private static int getAllIntElements(
+        IntCategory category, int[] array, int index)
+    {
+        int[] elements = category.toElementArray();
+        System.arraycopy(elements, 0, array, index, elements.length);
+        int next = index + elements.length;
+        for (IntCategory child : category.getChildren())
+        {
+            next = getAllIntElements(child, array, next);
+        }
+        return next;
+    }
+    
+    /**
+     * Returns a new, sorted array containing all distinct elements of 
+     * the given {@link LongCategory} and its children, without boxing 
+     * the elements
+     * 
+     * @param category The category to collect all elements from
+     * @return The array of all elements of the given category and its 
+     * children
+     */
+    public static long[] getAllLongElements(LongCategory category)
+    {
+        long[] array = new long[countAllElements(category)];
+        getAllLongElements(category, array, 0);
+        Arrays.sort(array);
+        int n = 0;
+        for (int i = 0; i < array.length; i++)
+        {
+            if (n == 0 || array[n - 1] != array[i])
+            {
+                array[n] = array[i];
+                n++;
+            }
+        }
+        return Arrays.copyOf(array, n);
+    }
+    
+    /**
+     * Write all elements of the given category and its children into
+     * the given array, starting at the given index, recursively
+     * 
+     * @param category The category to collect all elements from
+     * @param array The array
+     * @param index The index where the first element should be written
+     * @return The index after the last element that was written
+     */
+    private static int getAllLongElements(
+        LongCategory category, long[] array, int index)
+    {
+        long[] elements = category.toElementArray();
+        System.arraycopy(elements, 0, array, index, elements.length);
+        int next = index + elements.length;
+        for (LongCategory child : category.getChildren())
+        {
+            next = getAllLongElements(child, array, next);
+        }
+        return next;
+    }
+    
+    /**
+     * Returns the number of elements in the given category, without 
+     * copying the elements for the implementations that create their 
+     * list of elements lazily
+     * 
+     * @param category The category
+     * @return The number of elements
+     */
+    static int getElementCount(Category<?> category)
+    {
+        if (category instanceof DefaultCategory<?>)
+        {
+            return ((DefaultCategory<?>) category).getElementCount();
+        }
+        if (category instanceof IntCategory)
+        {
+            return ((IntCategory) category).getElementCount();
+        }
+        if (category instanceof LongCategory)
+        {
+            return ((LongCategory) category).getElementCount();
+        }
+        return category.getElements().size();
+    }
+    
+    /**
+     * Returns the total number of elements in the given category and 
+     * all its descendants
+     * 
+     * @param category The category
+     * @return The number of elements
+     */
+    private static int countAllElements(Category<?> category)
+    {
+        int count = getElementCount(category);
+        for (Category<?> child : category.getChildren())
+        {
+            count += countAllElements(child);
+        }
+        return count;
+    }
+    
+    /**
+     * Add all elements of the given category and its children to the
+     * given result set, recursively
+     * 
+     * @param <T> The type of the elements in the {@link Category}
+     * 
+     * @param category The category to collect all elements from
+     * @param result The resulting set storing the elements
+     */
+    private static <T> void getAllElements(Category<T> category, Set<T> result)
+    {
+        result.addAll(category.getElements());
+        for (Category<T> child : category.getChildren())
+        {
+            getAllElements(child, result);
+        }
+    }
+    
+    /**
+     * Returns a lazy stream over all elements of the given {@link Category}
+     * and its descendants. See {@link #streamElements(Category, boolean)}
+     * for details.
+     * 
+     * @param <T> The type of the elements in the {@link Category}
+     * 
+     * @param category The category
+     * @return The stream of all elements
+     */
+    public static <T> Stream<T> streamElements(Category<T> category)
+    {
+        return streamElements(category, false);
+    }
+    
+    /**
+     * Returns a lazy stream over all elements of the given {@link Category}
+     * and its descendants, optionally omitting duplicates.<br>
+     * <br>
+     * In contrast to {@link #getAllElements(Category)}, this does not
+     * collect the elements into a new collection. The children and 
+     * elements of the categories are only obtained when they are 
+     * reached by the stream, so that short-circuiting operations like
+     * <code>findFirst</code> or <code>anyMatch</code> only visit the 
+     * required part of the hierarchy. When the stream is processed
+     * in parallel, then different subtrees are processed by different
+     * threads.<br>
+     * <br>
+     * The stream is ordered: The elements of a category are encountered
+     * before the elements of its children. When the elements are 
+     * distinct, and the order does not matter, then calling 
+     * <code>unordered()</code> on a parallel stream may considerably 
+     * improve the performance.<br>
+     * <br>
+     * The category should not be modified while the stream is processed.
+     * 
+     * @param <T> The type of the elements in the {@link Category}
+     * 
+     * @param category The category
+     * @param distinct Whether duplicate elements should be omitted
+     * @return The stream of all elements
+     */
+    public static <T> Stream<T> streamElements(
+        Category<T> category, boolean distinct)
+    {
+        Objects.requireNonNull(category, "The category may not be null");
+        Stream<T> stream = StreamSupport.stream(
+            new CategoryElementSpliterator<T>(category), false);
+        if (distinct)
+        {
+            return stream.distinct();
+        }
+        return stream;
+    }
+    
+    /**
+     * Reduces the given {@link Category} hierarchy in parallel, using
+     * the common <code>ForkJoinPool</code>. See 
+     * {@link #parallelReduce(Category, Function, BinaryOperator, 
+     * ForkJoinPool)} for details.
+     * 
+     * @param <T> The type of the elements in the {@link Category}
+     * @param <R> The type of the result
+     * 
+     * @param category The root {@link Category}
+     * @param mapper The function that computes the result for a single
+     * category
+     * @param combiner The function that combines two results
+     * @return The result
+     */
+    public static <T, R> R parallelReduce(Category<T> category, 
+        Function<? super Category<T>, ? extends R> mapper, 
+        BinaryOperator<R> combiner)
+    {
+        return parallelReduce(
+            category, mapper, combiner, ForkJoinPool.commonPool());
+    }
+    
+    /**
+     * Reduces the given {@link Category} hierarchy in parallel, using
+     * the given <code>ForkJoinPool</code>.<br>
+     * <br>
+     * The given mapper will be applied to each category of the hierarchy,
+     * and the results will be combined with the given combiner. The 
+     * mapper should only consider the given category itself, and not
+     * its children. The combiner must be associative. The results will
+     * be combined in pre-order, so that, for example, the result for a 
+     * category will be combined with the results for its children, in 
+     * the order of the children. For example, the total number of 
+     * elements in a hierarchy may be computed as 
+     * <pre><code>
+     * int count = Categories.parallelReduce(category, 
+     *     c -&gt; c.getElements().size(), Integer::sum);
+     * </code></pre>
+     * The work is split into subtasks for the subtrees of the hierarchy.
+     * Subtasks are only created for children that have children of
+     * their own or a large number of elements, and only while there are
+     * not enough subtasks for the other threads, so that the work is 
+     * split adaptively, depending on the load of the threads.<br>
+     * <br>
+     * The hierarchy should not be modified while it is reduced.
+     * 
+     * @param <T> The type of the elements in the {@link Category}
+     * @param <R> The type of the result
+     * 
+     * @param category The root {@link Category}
+     * @param mapper The function that computes the result for a single
+     * category
+     * @param combiner The function that combines two results
+     * @param pool The <code>ForkJoinPool</code>
+     * @return The result
+     */
+    public static <T, R> R parallelReduce(Category<T> category, 
+        Function<? super Category<T>, ? extends R> mapper, 
+        BinaryOperator<R> combiner, ForkJoinPool pool)
+    {
+        Objects.requireNonNull(pool, "The pool may not be null");
+        return pool.invoke(
+            new CategoryReduceTask<T, R>(category, mapper, combiner));
+    }
+    
+    /**
+     * Merges the given source {@link Category} into the given target 
+     * {@link Category}. This merge will be performed recursively 
+     * for all sub-categories. 
+     * 
+     * @param <T> The type of the elements in the {@link Category}
+     * 
+     * @param target The {@link MutableCategory} to which the other will
+     * be added 
+     * @param source The source {@link Category}
+     */
+    public static <T> void mergeRecursively(
+        MutableCategory<T> target, 
+        Category<? extends T> source)
+    {
+        target.addElements(source.getElements());
+        for (Category<? extends T> sourceChild : source.getChildren())
+        {
+            MutableCategory<T> targetChild = 
+                target.addChild(sourceChild.getName());
+            mergeRecursively(targetChild, sourceChild);
+        }
+    }
+    
+    /**
+     * Merges the given source {@link Category} into the given target 
+     * {@link Category}, using the common <code>ForkJoinPool</code>.
+     * See {@link #mergeRecursively(MutableCategory, Category, MergeMode, 
+     * ForkJoinPool)} for details.
+     * 
+     * @param <T> The type of the elements in the {@link Category}
+     * 
+     * @param target The {@link MutableCategory} to which the other will
+     * be added 
+     * @param source The source {@link Category}
+     * @param mode The {@link MergeMode}
+     */
+    public static <T> void mergeRecursively(MutableCategory<T> target, 
+        Category<? extends T> source, MergeMode mode)
+    {
+        mergeRecursively(target, source, mode, ForkJoinPool.commonPool());
+    }
+    
+    /**
+     * Merges the given source {@link Category} into the given target 
+     * {@link Category}. This merge will be performed recursively 
+     * for all sub-categories. The given {@link MergeMode} determines
+     * which elements of the source categories are added to the target
+     * categories.<br>
+     * <br>
+     * The elements that have to be added to each target category are 
+     * determined in parallel, using the given pool. Source categories
+     * that do not have a corresponding target category are copied in 
+     * parallel as well, if the target parent is a category that was 
+     * created with {@link #create(String)}. Afterwards, the target 
+     * hierarchy is modified by the calling thread, during a 
+     * {@link MutableCategory#batch(java.util.function.Consumer) batch}. 
+     * Each copied subtree is attached with a single event, and the 
+     * elements for each existing target category are added with a 
+     * single event.<br>
+     * <br>
+     * Neither the source nor the target hierarchy may be modified while
+     * this method is executed.
+     * 
+     * @param <T> The type of the elements in the {@link Category}
+     * 
+     * @param target The {@link MutableCategory} to which the other will
+     * be added 
+     * @param source The source {@link Category}
+     * @param mode The {@link MergeMode}
+     * @param pool The pool
+     */
+    public static <T> void mergeRecursively(MutableCategory<T> target, 
+        Category<? extends T> source, MergeMode mode, ForkJoinPool pool)
+    {
+        Objects.requireNonNull(target, "The target may not be null");
+        Objects.requireNonNull(source, "The source may not be null");
+        Objects.requireNonNull(mode, "The mode may not be null");
+        Objects.requireNonNull(pool, "The pool may not be null");
+        CategoryMergeTask.merge(target, source, mode, pool);
+    }
+    
+    
+    /**
+     * Computes the differences between the given {@link Category} 
+     * hierarchies. The returned {@link CategoryDiff} describes the 
+     * children and elements that have to be removed and added at each
+     * path, in order to transform the first hierarchy into the second 
+     * one, and may be {@link CategoryDiff#applyTo(MutableCategory) 
+     * applied} to a {@link MutableCategory}.<br>
+     * <br>
+     * Subtrees that are identical in both hierarchies are skipped. 
+     * Subtrees that are equal are skipped quickly when the categories
+     * cache their hash codes, which is the case for categories that 
+     * have been created with {@link #create(String)}, 
+     * {@link #snapshot(Category)} or {@link #compact(Category)}. This
+     * allows computing the differences between two snapshots of the 
+     * same hierarchy in time that is proportional to the size of the
+     * changes.
+     * 
+     * @param <T> The type of the elements in the {@link Category}
+     * 
+     * @param a The first {@link Category}
+     * @param b The second {@link Category}
+     * @return The {@link CategoryDiff}
+     */
+    public static <T> CategoryDiff<T> diff(Category<T> a, Category<T> b)
+    {
+        return CategoryDiff.compute(a, b);
+    }
+    
+    /**
+     * Clean up the given {@link Category}. That is, this method will 
+     * recursively remove all categories from the given hierarchy that 
+     * have neither {@link Category#getChildren() children} nor 
+     * {@link Category#getElements() elements}. 
+     *  
+     * @param category The {@link Category} to clean up
+     */
+    public static void removeEmptyCategories(MutableCategory<?> category)
+    {
+        List<? extends MutableCategory<?>> children = category.getChildren();
+        for (MutableCategory<?> child : children)
+        {
+            removeEmptyCategories(child);
+        }
+        for (MutableCategory<?> child : children)
+        {
+            if (child.getChildren().isEmpty() && 
+                child.getElements().isEmpty())
+            {
+                category.removeChild(child.getName());
+            }
+        }
+    }
+    
+    /**
+     * Creates a formatted, multi-line string representation of the given 
+     * {@link Category}. <br>
+     * <br>
+     * <b>The exact format of this string is unspecified!</b><br>
+     * <br>
+     * This method is mainly intended for debugging.
+     * 
+     * @param category The {@link Category}
+     * @return The string representation
+     */
+    public static String toFormattedString(Category<?> category)
+    {
+        return new CategoryRenderer().render(category);
+    }
+    
+    /**
+     * Create a new {@link CategoryRenderer} that writes formatted, 
+     * multi-line representations of {@link Category} hierarchies. 
+     * Initially, the renderer creates the same representation as
+     * {@link #toFormattedString(Category)}.
+     * 
+     * @return The new {@link CategoryRenderer}
+     */
+    public static CategoryRenderer createRenderer()
+    {
+        return new CategoryRenderer();
+    }
+
+    /**
+     * Private constructor to prevent instantiation
+     */
+    private Categories()
+    {
+        // Private constructor to prevent instantiation
+    }
+}
@@ -1,195 +1,307 @@
-/*
- * www.javagl.de - Category
- *
- * Copyright (c) 2012-2017 Marco Hutter - http://www.javagl.de
- * 
- * Permission is hereby granted, free of charge, to any person
- * obtaining a copy of this software and associated documentation
- * files (the "Software"), to deal in the Software without
- * restriction, including without limitation the rights to use,
- * copy, modify, merge, publish, distribute, sublicense, and/or sell
- * copies of the Software, and to permit persons to whom the
- * Software is furnished to do so, subject to the following
- * conditions:
- * 
- * The above copyright notice and this permission notice shall be
- * included in all copies or substantial portions of the Software.
- * 
- * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
- * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
- * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
- * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
- * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
- * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
- * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
- * OTHER DEALINGS IN THE SOFTWARE.
- */
-
-package de.javagl.category;
-
-import java.util.Arrays;
-import java.util.LinkedHashSet;
-import java.util.Objects;
-import java.util.Set;
-
-/**
- * A builder for {@link Category} hierarchies: 
- * <pre><code>
- * CategoriesBuilder&lt;Type&gt; b = Categories.createBuilder("Root");
- * b.add(elementForRoot);
- * b.get("FirstChild").add(someElementForFirstChild);
- * b.get("FirstChild").add(someOtherElementForFirstChild);
- * b.get("SecondChild").add(ElementForSecondChild);
- * b.get("SecondChild").get("GrandChild").add(lastElement);
- * Category&lt;Type&gt; root = b.get();
- * </code></pre>
- * This class essentially wraps a {@link MutableCategory} and offers 
- * convenience functions for the initial construction of the categories,
- * for example, by creating the child categories on demand.
- * 
- * @param <T> The type of elements for the {@link Category}
- */
-public final class CategoriesBuilder<T>
-{
-    /**
-     * The category that is currently built
-     */
-    private MutableCategory<T> category;
-
-    /**
-     * Creates a new instance of this builder, using the given name
-     * for the root category.
-     * 
-     * @param name The name of the root category
-     */
-    CategoriesBuilder(String name)
-    {
-        this.category = new DefaultCategory<T>(name);
-    }
-
-    /**
-     * Creates a new instance of this builder, for the given {@link Category}
-     * 
-     * @param category The {@link Category}
-     */
-    private CategoriesBuilder(MutableCategory<T> category)
-    {
-        this.category = Objects.requireNonNull(
-            category, "The category may not be null");
-    }
-    
-    /**
-     * Add the given element to the category represented by this builder.
-     * 
-     * @param element The element to add
-     * @return This builder
-     */
-    public CategoriesBuilder<T> add(T element)
-    {
-        category.addElements(Arrays.asList(element));
-        return this;
-    }
-    
-    /**
-     * Add the given elements to the category represented by this builder.
-     * 
-     * @param elements The elements to add
-     * @return This builder
-     */
-    public CategoriesBuilder<T> addAll(Iterable<? extends T> elements)
-    {
-        if (elements != null)
-        {
-            category.addElements(elements);
-        }
-        return this;
-    }
-
-    /**
-     * Returns a builder for the sub-category with the given name.
-     * If the respective sub-category does not exist, it will be
-     * created. 
-     * 
-     * @param name The name of the sub-category
-     * @return The builder for the sub-category
-     */
-    public CategoriesBuilder<T> get(String name)
-    {
-        Objects.requireNonNull(name, "The name may not be null");
-        MutableCategory<T> childCategory = category.getChild(name);
-        if (childCategory == null)
-        {
-            childCategory = category.addChild(name);
-        }
-        CategoriesBuilder<T> child = new CategoriesBuilder<T>(childCategory);
-        return child;
-    }
-    
-    /**
-     * Returns an unmodifiable set containing elements that are contained 
-     * in the {@link Category} that is about to be constructed with this 
-     * builder, or in any of its sub-categories. Changes in this builder
-     * will not affect the returned set.
-     * 
-     * @return The set containing all elements
-     */
-    private Set<T> getAllElements()
-    {
-        return Categories.getAllElements(category);
-    }
-    
-    /**
-     * Merges the given {@link Category} with the {@link Category} that is 
-     * currently being built. This merge will be performed recursively 
-     * for all sub-categories. 
-     * 
-     * @param other The other {@link Category}
-     * @return This builder 
-     */
-    public CategoriesBuilder<T> mergeRecursively(Category<? extends T> other)
-    {
-        Categories.mergeRecursively(category, other);
-        return this;
-    }
-    
-    /**
-     * Add each of the given elements to a category with the given name
-     * <i>iff</i> it is <b>not</b> already contained in the current
-     * category or any of its children.
-     * 
-     * @param name The category name
-     * @param candidates The candidates to add, if they are not yet
-     * contained somewhere in the category hierarchy
-     * @return This builder
-     */
-    public CategoriesBuilder<T> addIfUncategorized(
-        String name, Iterable<? extends T> candidates)
-    {
-        Objects.requireNonNull(name, "The name may not be null");
-        Set<T> available = new LinkedHashSet<T>();
-        for (T candidate : candidates)
-        {
-            available.add(candidate);
-        }
-        available.removeAll(getAllElements());
-        for (T element : available)
-        {
-            get(name).add(element);
-        }
-        return this;
-        
-    }
-    
-    /**
-     * Returns the {@link MutableCategory} that is currently being built 
-     * 
-     * @return The {@link MutableCategory}
-     */
-    public MutableCategory<T> get()
-    {
-        return category;
-    }
-    
-    
-     
-}
+/*
+ * www.javagl.de - Category
+ *
+ * Copyright (c) 2012-2017 Marco Hutter - http://www.javagl.de
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package de.javagl.category;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * A builder for {@link Category} hierarchies: 
+ * <pre><code>
+ * CategoriesBuilder&lt;Type&gt; b = Categories.createBuilder("Root");
+ * b.add(elementForRoot);
+ * b.get("FirstChild").add(someElementForFirstChild);
+ * b.get("FirstChild").add(someOtherElementForFirstChild);
+ * b.get("SecondChild").add(ElementForSecondChild);
+ * b.get("SecondChild").get("GrandChild").add(lastElement);
+ * Category&lt;Type&gt; root = b.get();
+ * </code></pre>
+ * This class essentially wraps a {@link MutableCategory} and offers 
+ * convenience functions for the initial construction of the categories,
+ * for example, by creating the child categories on demand.
+ * 
+ * @param <T> The type of elements for the {@link Category}
+ */
+public final class CategoriesBuilder<T>
+{
+    /**
+     * The category that is currently built
+     */
+    private MutableCategory<T> category;
+    
+    /**
+     * The builders for the children of the category, which are created 
+     * lazily
+     */
+    private Map<String, CategoriesBuilder<T>> childBuilders;
+
+    /**
+     * Creates a new instance of this builder, using the given name
+     * for the root category.
+     * 
+     * @param name The name of the root category
+     */
+    CategoriesBuilder(String name)
+    {
+        this.category = new DefaultCategory<T>(name);
+    }
+
+    /**
+     * Creates a new instance of this builder, using the given name
+     * for the root category, and the given {@link CategoryNameDictionary}
+     * for the names of all categories
+     * 
+     * @param name The name of the root category
+     * @param nameDictionary The {@link CategoryNameDictionary}
+     */
+    CategoriesBuilder(String name, CategoryNameDictionary nameDictionary)
+    {
+        this.category = new DefaultCategory<T>(name, false, 
+            Objects.requireNonNull(nameDictionary, 
+                "The nameDictionary may not be null"));
+    }
+
+    /**
+     * Creates a new instance of this builder, for the given {@link Category}
+     * 
+     * @param category The {@link Category}
+     */
+    private CategoriesBuilder(MutableCategory<T> category)
+    {
+        this.category = Objects.requireNonNull(
+            category, "The category may not be null");
+    }
+    
+    /**
+     * Add the given element to the category represented by this builder.
+     * 
+     * @param element The element to add
+     * @return This builder
+     */
+    public CategoriesBuilder<T> add(T element)
+    {
+        category.addElements(Collections.singletonList(element));
+        return this;
+    }
+    
+    /**
+     * Add the given elements to the category represented by this builder.
+     * 
+     * @param elements The elements to add
+     * @return This builder
+     */
+    public CategoriesBuilder<T> addAll(Iterable<? extends T> elements)
+    {
+        if (elements != null)
+        {
+            category.addElements(elements);
+        }
+        return this;
+    }
+    
+    /**
+     * Add the given elements to the sub-category at the given path, 
+     * creating all sub-categories along the path that do not exist yet.
+     * See {@link Categories#resolve(Category, String)} for details 
+     * about the format of the path. The elements will be added with
+     * a single event.
+     * 
+     * @param path The path of the sub-category
+     * @param elements The elements to add
+     * @return This builder
+     * @throws IllegalArgumentException If the path contains an empty name
+     */
+    public CategoriesBuilder<T> addAll(
+        String path, Iterable<? extends T> elements)
+    {
+        MutableCategory<T> target = Categories.ensurePath(category, path);
+        if (elements != null)
+        {
+            target.addElements(elements);
+        }
+        return this;
+    }
+    
+    /**
+     * Add the given elements to the sub-categories at the paths that 
+     * are the keys of the given map, as if by calling 
+     * {@link #addAll(String, Iterable)} for each entry. The events
+     * will be deferred until all elements have been added, and 
+     * coalesced, as described in 
+     * {@link MutableCategory#batch(java.util.function.Consumer)}.
+     * 
+     * @param elementsByPath The mapping from paths to elements
+     * @return This builder
+     * @throws IllegalArgumentException If a path contains an empty name
+     */
+    public CategoriesBuilder<T> addAll(
+        final Map<String, ? extends Iterable<? extends T>> elementsByPath)
+    {
+        Objects.requireNonNull(elementsByPath, 
+            "The elementsByPath may not be null");
+        category.batch(new Consumer<MutableCategory<T>>()
+        {
+            @Override
+            public void accept(MutableCategory<T> c)
+            {
+                for (Map.Entry<String, ? extends Iterable<? extends T>> entry :
+                    elementsByPath.entrySet())
+                {
+                    addAll(entry.getKey(), entry.getValue());
+                }
+            }
+        });
+        return this;
+    }
+
+    /**
+     * Returns a builder for the sub-category with the given name.
+     * If the respective sub-category does not exist, it will be
+     * created. The builder for each sub-category is created only 
+     * once, and returned again when this method is called with
+     * the same name.
+     * 
+     * @param name The name of the sub-category
+     * @return The builder for the sub-category
+     */
+    public CategoriesBuilder<T> get(String name)
+    {
+        Objects.requireNonNull(name, "The name may not be null");
+        if (childBuilders == null)
+        {
+            childBuilders = new HashMap<String, CategoriesBuilder<T>>();
+        }
+        MutableCategory<T> childCategory = category.getChild(name);
+        CategoriesBuilder<T> child = childBuilders.get(name);
+        if (child != null && child.category == childCategory)
+        {
+            return child;
+        }
+        if (childCategory == null)
+        {
+            childCategory = category.addChild(name);
+        }
+        child = new CategoriesBuilder<T>(childCategory);
+        childBuilders.put(name, child);
+        return child;
+    }
+    
+    /**
+     * Remove all elements from the given set that are contained in the
+     * given {@link Category} or any of its sub-categories. This stops 
+     * as soon as the set is empty.
+     * 
+     * @param <T> The type of the elements
+     * 
+     * @param category The {@link Category}
+     * @param available The set of elements
+     */
+    private static <T> void removeContained(
+        Category<T> category, Set<T> available)
+    {
+        for (T element : category.getElements())
+        {
+            if (available.remove(element) && available.isEmpty())
+            {
+                return;
+            }
+        }
+        for (Category<T> child : category.getChildren())
+        {
+            if (available.isEmpty())
+            {
+                return;
+            }
+            removeContained(child, available);
+        }
+    }
+    
+    /**
+     * Merges the given {@link Category} with the {@link Category} that is 
+     * currently being built. This merge will be performed recursively 
+     * for all sub-categories. 
+     * 
+     * @param other The other {@link Category}
+     * @return This builder 
+     */
+    public CategoriesBuilder<T> mergeRecursively(Category<? extends T> other)
+    {
+        Categories.mergeRecursively(category, other);
+        return this;
+    }
+    
+    /**
+     * Add each of the given elements to a category with the given name
+     * <i>iff</i> it is <b>not</b> already contained in the current
+     * category or any of its children. The hierarchy is traversed
+     * only once, and the elements will be added with a single event.
+     * 
+     * @param name The category name
+     * @param candidates The candidates to add, if they are not yet
+     * contained somewhere in the category hierarchy
+     * @return This builder
+     */
+    public CategoriesBuilder<T> addIfUncategorized(
+        String name, Iterable<? extends T> candidates)
+    {
+        Objects.requireNonNull(name, "The name may not be null");
+        Set<T> available = new LinkedHashSet<T>();
+        for (T candidate : candidates)
+        {
+            available.add(candidate);
+        }
+        if (!available.isEmpty())
+        {
+            removeContained(category, available);
+        }
+        if (!available.isEmpty())
+        {
+            get(name).addAll(available);
+        }
+        return this;
+
+    }
+    
+    /**
+     * Returns the {@link MutableCategory} that is currently being built 
+     * 
+     * @return The {@link MutableCategory}
+     */
+    public MutableCategory<T> get()
+    {
+        return category;
+    }
+    
+    
+     
+}
@@ -1,91 +1,153 @@
-/*
- * www.javagl.de - Category
- *
- * Copyright (c) 2012-2017 Marco Hutter - http://www.javagl.de
- * 
- * Permission is hereby granted, free of charge, to any person
- * obtaining a copy of this software and associated documentation
- * files (the "Software"), to deal in the Software without
- * restriction, including without limitation the rights to use,
- * copy, modify, merge, publish, distribute, sublicense, and/or sell
- * copies of the Software, and to permit persons to whom the
- * Software is furnished to do so, subject to the following
- * conditions:
- * 
- * The above copyright notice and this permission notice shall be
- * included in all copies or substantial portions of the Software.
- * 
- * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
- * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
- * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
- * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
- * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
- * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
- * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
- * OTHER DEALINGS IN THE SOFTWARE.
- */
-package de.javagl.category;
-
-import java.util.List;
-
-/**
- * Interface for a category that contains elements and is part of a 
- * hierarchy. Category hierarchies can be constructed using a 
- * {@link CategoriesBuilder} or using the methods from the
- * {@link Categories} class. <br>
- * 
- * @param <T> The type of elements in this category
- */
-public interface Category<T>
-{
-    /**
-     * Returns the name of this category. This should be a short, 
-     * human-readable string summarizing the purpose of all 
-     * elements that are contained in this category.
-     * 
-     * @return The name of this category
-     */
-    String getName();
-    
-    /**
-     * Returns an unmodifiable (possibly empty) list containing the 
-     * children of this category. Changes in this category
-     * will not affect the returned list.
-     * 
-     * @return The children of this category
-     */
-    List<? extends Category<T>> getChildren();
-    
-    /**
-     * Returns the child category with the given name, or <code>null</code>
-     * if there is no child with the given name. 
-     * 
-     * @param name The name of the child category
-     * @return The child category, or <code>null</code>
-     */
-    Category<T> getChild(String name);
-    
-    /**
-     * Returns an unmodifiable (possibly empty) list containing the
-     * elements that belong to this category. Changes in this category
-     * will not affect the returned list.
-     * 
-     * @return The elements of this category
-     */
-    List<T> getElements();
-    
-    /**
-     * Add the given {@link CategoryListener} to be informed about
-     * changes in this category <b>or any of its children.</b>
-     * 
-     * @param listener The {@link CategoryListener} to add
-     */
-    void addCategoryListener(CategoryListener<T> listener);
-
-    /**
-     * Remove the given {@link CategoryListener} from this category
-     * 
-     * @param listener The {@link CategoryListener} to remove
-     */
-    void removeCategoryListener(CategoryListener<T> listener);
-}
+/*
+ * www.javagl.de - Category
+ *
+ * Copyright (c) 2012-2017 Marco Hutter - http://www.javagl.de
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.javagl.category;
+
+import java.util.List;
+
+/**
+ * Interface for a category that contains elements and is part of a 
+ * hierarchy. Category hierarchies can be constructed using a 
+ * {@link CategoriesBuilder} or using the methods from the
+ * {@link Categories} class. <br>
+ * 
+ * @param <T> The type of elements in this category
+ */
+public interface Category<T>
+{
+    /**
+     * Returns the name of this category. This should be a short, 
+     * human-readable string summarizing the purpose of all 
+     * elements that are contained in this category.
+     * 
+     * @return The name of this category
+     */
+    String getName();
+    
+    /**
+     * Returns an unmodifiable (possibly empty) list containing the 
+     * children of this category. Changes in this category
+     * will not affect the returned list. <br>
+     * <br>
+     * Implementations may return the same list instance from repeated
+     * calls, as long as the children have not been modified in between,
+     * so that reading the children does not require a copy.
+     * 
+     * @return The children of this category
+     */
+    List<? extends Category<T>> getChildren();
+    
+    /**
+     * Returns the child category with the given name, or <code>null</code>
+     * if there is no child with the given name. 
+     * 
+     * @param name The name of the child category
+     * @return The child category, or <code>null</code>
+     */
+    Category<T> getChild(String name);
+    
+    /**
+     * Returns an unmodifiable (possibly empty) list containing the
+     * elements that belong to this category. Changes in this category
+     * will not affect the returned list. <br>
+     * <br>
+     * Implementations may return the same list instance from repeated
+     * calls, as long as the elements have not been modified in between,
+     * so that reading the elements does not require a copy.
+     * 
+     * @return The elements of this category
+     */
+    List<T> getElements();
+    
+    /**
+     * Returns whether the given element is contained in this category.
+     * This does <b>not</b> take the children of this category into
+     * account. <br>
+     * <br>
+     * Depending on the implementation, this may be considerably faster 
+     * than checking whether the {@link #getElements() elements} contain 
+     * the given element. The default implementation checks whether
+     * the {@link #getElements() elements} contain the given element.
+     * 
+     * @param element The element
+     * @return Whether the element is contained in this category
+     */
+    default boolean containsElement(Object element)
+    {
+        return getElements().contains(element);
+    }
+    
+    /**
+     * Add the given {@link CategoryListener} to be informed about
+     * changes in this category <b>or any of its children.</b>
+     * 
+     * @param listener The {@link CategoryListener} to add
+     */
+    void addCategoryListener(CategoryListener<T> listener);
+
+    /**
+     * Add the given {@link CategoryListener} to be informed about
+     * changes in this category <b>or any of its children</b>, that
+     * are accepted by the given {@link CategoryEventFilter}. If the 
+     * given filter is <code>null</code>, then the listener will 
+     * receive all events.<br>
+     * <br>
+     * Events that are not accepted by the filters of any listener
+     * do not have to be created and passed to the listeners at all.<br>
+     * <br>
+     * The default implementation adds a listener that passes the 
+     * accepted events to the given listener, using
+     * {@link #addCategoryListener(CategoryListener)}. Since this is a
+     * different listener, the given listener can then <b>not</b> be 
+     * removed with {@link #removeCategoryListener(CategoryListener)}. 
+     * Implementations should therefore override this method, so that 
+     * the listener can be removed, and to avoid creating the events 
+     * that are not accepted.
+     * 
+     * @param listener The {@link CategoryListener} to add
+     * @param filter The optional {@link CategoryEventFilter}
+     */
+    default void addCategoryListener(
+        CategoryListener<T> listener, CategoryEventFilter filter)
+    {
+        if (filter == null)
+        {
+            addCategoryListener(listener);
+        }
+        else
+        {
+            addCategoryListener(
+                new FilteringCategoryListener<T>(this, listener, filter));
+        }
+    }
+    
+    /**
+     * Remove the given {@link CategoryListener} from this category
+     * 
+     * @param listener The {@link CategoryListener} to remove
+     */
+    void removeCategoryListener(CategoryListener<T> listener);
+}
@@ -0,0 +1,270 @@
+/*
+ * www.javagl.de - Category
+ *
+ * Copyright (c) 2012-2017 Marco Hutter - http://www.javagl.de
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.javagl.category;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * Package-private class that collects the events that are fired during
+ * a batch of modifications, as described in 
+ * {@link MutableCategory#batch(Consumer)}.<br>
+ * <br>
+ * While a batch is active on a thread, the {@link CategoryListenerSupport}
+ * does not fire the events, but {@link #record records} them in this
+ * batch. All events of the same type from the same category are 
+ * coalesced into a single event, even when events from other categories
+ * have been recorded in between. When the batch is completed, the 
+ * coalesced events are fired, in the order in which the first event
+ * of each of them has been recorded.<br>
+ * <br>
+ * When a child is detached from its parent while a batch is active, 
+ * then the events that have been recorded until then are 
+ * {@link #flush() flushed}, so that the ancestors of the child still 
+ * receive the events that have been caused by the child before it
+ * was detached.
+ */
+final class CategoryBatch
+{
+    /**
+     * The batch that is currently active on the calling thread
+     */
+    private static final ThreadLocal<CategoryBatch> CURRENT = 
+        new ThreadLocal<CategoryBatch>();
+    
+    /**
+     * Returns the batch that is currently active on the calling thread,
+     * or <code>null</code> if there is no active batch
+     * 
+     * @return The current batch
+     */
+    static CategoryBatch current()
+    {
+        return CURRENT.get();
+    }
+    
+    /**
+     * Passes the given category to the given consumer, deferring and
+     * coalescing all events that are fired on the calling thread until
+     * the consumer returns. If a batch is already active on the calling 
+     * thread, then the events will be added to this batch.
+     * 
+     * @param <T> The type of the elements in the {@link Category}
+     * 
+     * @param category The category
+     * @param action The consumer
+     */
+    static <T> void run(MutableCategory<T> category, 
+        Consumer<? super MutableCategory<T>> action)
+    {
+        Objects.requireNonNull(action, "The action may not be null");
+        if (CURRENT.get() != null)
+        {
+            action.accept(category);
+            return;
+        }
+        CategoryBatch batch = new CategoryBatch();
+        CURRENT.set(batch);
+        try
+        {
+            action.accept(category);
+        }
+        finally
+        {
+            CURRENT.remove();
+            batch.fireAll();
+        }
+    }
+    
+    /**
+     * A sequence of events of the same type, from the same category
+     */
+    private static final class Run
+    {
+        /**
+         * The {@link CategoryListenerSupport} that recorded the events
+         */
+        private final CategoryListenerSupport<?> source;
+        
+        /**
+         * The type of the events
+         */
+        private final CategoryEventType type;
+        
+        /**
+         * The elements or children of all events in this run
+         */
+        private final List<Object> objects;
+        
+        /**
+         * Creates a new run
+         * 
+         * @param source The {@link CategoryListenerSupport}
+         * @param type The type of the events
+         */
+        Run(CategoryListenerSupport<?> source, CategoryEventType type)
+        {
+            this.source = source;
+            this.type = type;
+            this.objects = new ArrayList<Object>();
+        }
+    }
+    
+    /**
+     * The runs of events, in the order in which the first event of 
+     * each run has been recorded
+     */
+    private final List<Run> runs;
+    
+    /**
+     * The runs of events, for each {@link CategoryListenerSupport} and
+     * each event type
+     */
+    private final Map<CategoryListenerSupport<?>, 
+        Map<CategoryEventType, Run>> runsBySource;
+    
+    /**
+     * Private constructor for a new batch
+     */
+    private CategoryBatch()
+    {
+        this.runs = new ArrayList<Run>();
+        this.runsBySource = new IdentityHashMap<CategoryListenerSupport<?>, 
+            Map<CategoryEventType, Run>>();
+    }
+    
+    /**
+     * Record an event of the given type for the given source, involving
+     * the given elements or children. The given objects will be copied.
+     * 
+     * @param source The {@link CategoryListenerSupport}
+     * @param type The type of the event
+     * @param objects The elements or children
+     */
+    void record(CategoryListenerSupport<?> source, 
+        CategoryEventType type, Iterable<?> objects)
+    {
+        Map<CategoryEventType, Run> sourceRuns = runsBySource.get(source);
+        if (sourceRuns == null)
+        {
+            sourceRuns = new EnumMap<CategoryEventType, Run>(
+                CategoryEventType.class);
+            runsBySource.put(source, sourceRuns);
+        }
+        Run run = sourceRuns.get(type);
+        if (run == null)
+        {
+            run = new Run(source, type);
+            sourceRuns.put(type, run);
+            runs.add(run);
+        }
+        for (Object object : objects)
+        {
+            run.objects.add(object);
+        }
+    }
+    
+    /**
+     * Fire the coalesced events of all runs that have been recorded
+     * until now, and remove them from this batch. This is called before
+     * a child is detached from its parent, so that the events of the 
+     * child are still forwarded to the ancestors. While the events are 
+     * fired, this batch is not active on the calling thread.
+     */
+    void flush()
+    {
+        if (runs.isEmpty())
+        {
+            return;
+        }
+        CURRENT.remove();
+        try
+        {
+            fireAll();
+        }
+        finally
+        {
+            CURRENT.set(this);
+        }
+    }
+    
+    /**
+     * Fire the coalesced events of all runs, and remove them from 
+     * this batch
+     */
+    private void fireAll()
+    {
+        List<Run> pendingRuns = new ArrayList<Run>(runs);
+        runs.clear();
+        runsBySource.clear();
+        for (Run run : pendingRuns)
+        {
+            fire(run.source, run);
+        }
+    }
+    
+    /**
+     * Fire the coalesced event for the given run
+     * 
+     * @param <T> The type of the elements
+     * 
+     * @param source The {@link CategoryListenerSupport}
+     * @param run The run
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> void fire(CategoryListenerSupport<T> source, Run run)
+    {
+        switch (run.type)
+        {
+            case ELEMENTS_ADDED:
+                source.fireOwnedElementsAdded((List<T>) run.objects);
+                break;
+                
+            case ELEMENTS_REMOVED:
+                source.fireOwnedElementsRemoved((List<T>) run.objects);
+                break;
+                
+            case CHILD_ADDED:
+                source.fireChildrenAdded(
+                    (List<Category<T>>) (List<?>) run.objects);
+                break;
+                
+            case CHILD_REMOVED:
+                source.fireChildrenRemoved(
+                    (List<Category<T>>) (List<?>) run.objects);
+                break;
+                
+            default:
+                break;
+        }
+    }
+}
@@ -0,0 +1,456 @@
+/*
+ * www.javagl.de - Category
+ *
+ * Copyright (c) 2012-2017 Marco Hutter - http://www.javagl.de
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.javagl.category;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A class for writing {@link Category} hierarchies in a compact binary 
+ * format, and for reading them back. Instances of this class may be 
+ * created with {@link Categories#createCodec(CategoryElementSerializer)},
+ * with a {@link CategoryElementSerializer} for the elements. 
+ * Serializers for common element types are offered by the 
+ * {@link #stringSerializer()}, {@link #integerSerializer()} and
+ * {@link #longSerializer()} methods.<br>
+ * <br>
+ * The categories are written in post-order, so that each category 
+ * refers to its children by their absolute offsets. The names are 
+ * stored only once, in a table at the end of the data. When the 
+ * data is {@link #read(Path) read from a file}, then the file is 
+ * mapped into memory, and only the names table is decoded eagerly. 
+ * The children and elements of each category are decoded lazily, 
+ * when they are accessed for the first time. When the data is 
+ * corrupt, this may cause an <code>IllegalStateException</code>
+ * when the children or elements are accessed.<br>
+ * <br>
+ * Instances of this class are thread-safe when the serializer is 
+ * thread-safe.
+ * 
+ * @param <T> The type of the elements in the {@link Category}
+ */
+public final class CategoryCodec<T>
+{
+    /**
+     * The magic number at the beginning of the data
+     */
+    private static final int MAGIC = 0x43415447;
+    
+    /**
+     * The version of the format
+     */
+    private static final int VERSION = 1;
+    
+    /**
+     * The size of the header, consisting of the magic number and version
+     */
+    private static final int HEADER_SIZE = 8;
+    
+    /**
+     * The size of the trailer, consisting of the offset of the names 
+     * table and the offset of the root category
+     */
+    private static final int TRAILER_SIZE = 8;
+    
+    /**
+     * Returns a {@link CategoryElementSerializer} for strings. The 
+     * strings are written in UTF-8. The serializer supports 
+     * <code>null</code> elements.
+     * 
+     * @return The serializer
+     */
+    public static CategoryElementSerializer<String> stringSerializer()
+    {
+        return new CategoryElementSerializer<String>()
+        {
+            @Override
+            public void write(String element, DataOutput output) 
+                throws IOException
+            {
+                writeString(element, output);
+            }
+
+            @Override
+            public String read(ByteBuffer buffer)
+            {
+                return readString(buffer);
+            }
+        };
+    }
+    
+    /**
+     * Returns a {@link CategoryElementSerializer} for integers. The 
+     * serializer does not support <code>null</code> elements.
+     * 
+     * @return The serializer
+     */
+    public static CategoryElementSerializer<Integer> integerSerializer()
+    {
+        return new CategoryElementSerializer<Integer>()
+        {
+            @Override
+            public void write(Integer element, DataOutput output) 
+                throws IOException
+            {
+                output.writeInt(element);
+            }
+
+            @Override
+            public Integer read(ByteBuffer buffer)
+            {
+                return buffer.getInt();
+            }
+        };
+    }
+    
+    /**
+     * Returns a {@link CategoryElementSerializer} for longs. The 
+     * serializer does not support <code>null</code> elements.
+     * 
+     * @return The serializer
+     */
+    public static CategoryElementSerializer<Long> longSerializer()
+    {
+        return new CategoryElementSerializer<Long>()
+        {
+            @Override
+            public void write(Long element, DataOutput output) 
+                throws IOException
+            {
+                output.writeLong(element);
+            }
+
+            @Override
+            public Long read(ByteBuffer buffer)
+            {
+                return buffer.getLong();
+            }
+        };
+    }
+    
+    /**
+     * Write the given string, which may be <code>null</code>, as its 
+     * length and its UTF-8 bytes. The length is -1 for 
+     * <code>null</code>.
+     * 
+     * @param string The string
+     * @param output The output
+     * @throws IOException If an IO error occurs
+     */
+    private static void writeString(String string, DataOutput output) 
+        throws IOException
+    {
+        if (string == null)
+        {
+            output.writeInt(-1);
+            return;
+        }
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+    
+    /**
+     * Read a string that was written with 
+     * {@link #writeString(String, DataOutput)}
+     * 
+     * @param buffer The buffer
+     * @return The string
+     * @throws IllegalStateException If the length of the string is
+     * not valid for the given buffer
+     */
+    private static String readString(ByteBuffer buffer)
+    {
+        int length = buffer.getInt();
+        if (length == -1)
+        {
+            return null;
+        }
+        if (length < -1 || length > buffer.remaining())
+        {
+            throw new IllegalStateException(
+                "Corrupt data: Invalid string length: " + length);
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * The {@link CategoryElementSerializer} for the elements
+     */
+    private final CategoryElementSerializer<T> serializer;
+    
+    /**
+     * Creates a new instance
+     * 
+     * @param serializer The {@link CategoryElementSerializer}
+     */
+    CategoryCodec(CategoryElementSerializer<T> serializer)
+    {
+        this.serializer = Objects.requireNonNull(
+            serializer, "The serializer may not be null");
+    }
+    
+    /**
+     * Write the given {@link Category} hierarchy to the given file
+     * 
+     * @param category The root {@link Category}
+     * @param path The path of the file
+     * @throws IOException If an IO error occurs
+     */
+    public void write(Category<? extends T> category, Path path) 
+        throws IOException
+    {
+        Objects.requireNonNull(path, "The path may not be null");
+        try (OutputStream outputStream = Files.newOutputStream(path))
+        {
+            write(category, outputStream);
+        }
+    }
+    
+    /**
+     * Write the given {@link Category} hierarchy to the given stream.
+     * The caller is responsible for closing the stream.
+     * 
+     * @param category The root {@link Category}
+     * @param outputStream The stream
+     * @throws IOException If an IO error occurs, or the data would be 
+     * larger than 2GB
+     */
+    public void write(Category<? extends T> category, 
+        OutputStream outputStream) throws IOException
+    {
+        Objects.requireNonNull(category, "The category may not be null");
+        Objects.requireNonNull(outputStream, 
+            "The outputStream may not be null");
+        DataOutputStream output = new DataOutputStream(
+            new BufferedOutputStream(outputStream));
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+        Map<String, Integer> nameIds = new HashMap<String, Integer>();
+        List<String> names = new ArrayList<String>();
+        int rootOffset = writeCategory(category, output, nameIds, names);
+        int namesOffset = output.size();
+        output.writeInt(names.size());
+        for (String name : names)
+        {
+            writeString(name, output);
+        }
+        output.writeInt(namesOffset);
+        output.writeInt(rootOffset);
+        checkSize(output);
+        output.flush();
+    }
+    
+    /**
+     * Make sure that the size of the given output is not larger than
+     * what can be described with the offsets. The size of a
+     * <code>DataOutputStream</code> saturates at 
+     * <code>Integer.MAX_VALUE</code>.
+     * 
+     * @param output The output
+     * @throws IOException If the data is larger than 2GB
+     */
+    private static void checkSize(DataOutputStream output) 
+        throws IOException
+    {
+        if (output.size() == Integer.MAX_VALUE)
+        {
+            throw new IOException("The data is larger than 2GB");
+        }
+    }
+    
+    /**
+     * Write the given category and its descendants in post-order, and
+     * return the offset where the given category was written
+     * 
+     * @param <U> The type of the elements
+     * 
+     * @param category The category
+     * @param output The output
+     * @param nameIds The mapping from names to their index in the table
+     * @param names The names table
+     * @return The offset of the category
+     * @throws IOException If an IO error occurs, or the data would be 
+     * larger than 2GB
+     */
+    private <U extends T> int writeCategory(Category<U> category, 
+        DataOutputStream output, Map<String, Integer> nameIds, 
+        List<String> names) throws IOException
+    {
+        List<? extends Category<U>> children = category.getChildren();
+        int[] childOffsets = new int[children.size()];
+        for (int i = 0; i < childOffsets.length; i++)
+        {
+            childOffsets[i] = 
+                writeCategory(children.get(i), output, nameIds, names);
+        }
+        String name = category.getName();
+        Integer nameId = nameIds.get(name);
+        if (nameId == null)
+        {
+            nameId = names.size();
+            nameIds.put(name, nameId);
+            names.add(name);
+        }
+        int offset = output.size();
+        output.writeInt(nameId);
+        output.writeInt(childOffsets.length);
+        for (int childOffset : childOffsets)
+        {
+            output.writeInt(childOffset);
+        }
+        List<U> elements = category.getElements();
+        output.writeInt(elements.size());
+        for (U element : elements)
+        {
+            serializer.write(element, output);
+        }
+        checkSize(output);
+        return offset;
+    }
+    
+    /**
+     * Read a {@link Category} hierarchy from the given file. The file 
+     * will be mapped into memory, and the categories will be decoded 
+     * lazily. The file should not be modified while the returned 
+     * category is in use.<br>
+     * <br>
+     * The returned category and its descendants are immutable, and may 
+     * be shared among threads without synchronization. Listeners that 
+     * are added to them will never be notified. 
+     * 
+     * @param path The path of the file
+     * @return The root {@link Category}
+     * @throws IOException If an IO error occurs, or the file does not
+     * contain valid data
+     */
+    public Category<T> read(Path path) throws IOException
+    {
+        Objects.requireNonNull(path, "The path may not be null");
+        try (FileChannel channel = 
+            FileChannel.open(path, StandardOpenOption.READ))
+        {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE)
+            {
+                throw new IOException("The file is larger than 2GB");
+            }
+            ByteBuffer buffer = 
+                channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            return read(buffer);
+        }
+    }
+    
+    /**
+     * Read a {@link Category} hierarchy from the given buffer. The data 
+     * is read from the position of the buffer up to its limit. The 
+     * categories will be decoded lazily, and the buffer should 
+     * therefore not be modified while the returned category is in use. 
+     * See {@link #read(Path)} for details.
+     * 
+     * @param buffer The buffer
+     * @return The root {@link Category}
+     * @throws IOException If the buffer does not contain valid data
+     */
+    public Category<T> read(ByteBuffer buffer) throws IOException
+    {
+        Objects.requireNonNull(buffer, "The buffer may not be null");
+        ByteBuffer data = buffer.slice();
+        int size = data.limit();
+        if (size < HEADER_SIZE + TRAILER_SIZE)
+        {
+            throw new IOException("The data is too short: " + size);
+        }
+        if (data.getInt(0) != MAGIC)
+        {
+            throw new IOException("Invalid magic number");
+        }
+        int version = data.getInt(4);
+        if (version != VERSION)
+        {
+            throw new IOException("Unsupported version: " + version);
+        }
+        int namesOffset = data.getInt(size - TRAILER_SIZE);
+        int rootOffset = data.getInt(size - TRAILER_SIZE + 4);
+        if (namesOffset < HEADER_SIZE || namesOffset > size - TRAILER_SIZE ||
+            rootOffset < HEADER_SIZE || rootOffset >= namesOffset)
+        {
+            throw new IOException("Invalid offsets");
+        }
+        ByteBuffer namesBuffer = data.duplicate();
+        namesBuffer.position(namesOffset);
+        int numNames = namesBuffer.getInt();
+        
+        // Each name consists of at least its length
+        if (numNames < 0 || numNames > namesBuffer.remaining() / 4)
+        {
+            throw new IOException("Invalid number of names: " + numNames);
+        }
+        String[] names = new String[numNames];
+        try
+        {
+            for (int i = 0; i < numNames; i++)
+            {
+                names[i] = readString(namesBuffer);
+                if (names[i] == null)
+                {
+                    throw new IOException("Invalid name at index " + i);
+                }
+            }
+        }
+        catch (BufferUnderflowException | IllegalStateException e)
+        {
+            throw new IOException("Invalid names table", e);
+        }
+        try
+        {
+            return new MappedCategory<T>(
+                data, names, serializer, namesOffset, rootOffset);
+        }
+        catch (IllegalStateException e)
+        {
+            throw new IOException("Invalid root category", e);
+        }
+    }
+}
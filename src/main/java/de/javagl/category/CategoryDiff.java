@@ -0,0 +1,502 @@
+/*
+ * www.javagl.de - Category
+ *
+ * Copyright (c) 2012-2017 Marco Hutter - http://www.javagl.de
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.javagl.category;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * A description of the differences between two {@link Category} 
+ * hierarchies. Instances of this class are created with
+ * {@link Categories#diff(Category, Category)}.<br>
+ * <br>
+ * The diff consists of a list of {@link Change} objects. Each change
+ * describes the children and elements that have to be removed from
+ * and added to the category at a certain path, in order to transform 
+ * the first hierarchy into the second one. The changes are ordered so
+ * that they can be {@link #applyTo(MutableCategory) applied} one 
+ * after the other: The change for a category always precedes the 
+ * changes for its descendants. The names of the root categories are 
+ * not compared.<br>
+ * <br>
+ * Instances of this class are immutable.
+ * 
+ * @param <T> The type of the elements in the {@link Category}
+ */
+public final class CategoryDiff<T>
+{
+    /**
+     * A description of the changes in a single category
+     * 
+     * @param <T> The type of the elements in the {@link Category}
+     */
+    public static final class Change<T>
+    {
+        /**
+         * The names of the path of the category, starting at the
+         * children of the root category
+         */
+        private final List<String> path;
+        
+        /**
+         * The names of the children that have to be removed
+         */
+        private final List<String> removedChildren;
+        
+        /**
+         * The names of the children that have to be added
+         */
+        private final List<String> addedChildren;
+        
+        /**
+         * The elements that have to be removed
+         */
+        private final List<T> removedElements;
+        
+        /**
+         * The elements that have to be added
+         */
+        private final List<T> addedElements;
+        
+        /**
+         * Creates a new instance. The given lists will be stored 
+         * directly, and may not be modified afterwards.
+         * 
+         * @param path The names of the path of the category
+         * @param removedChildren The names of the children to remove
+         * @param addedChildren The names of the children to add
+         * @param removedElements The elements to remove
+         * @param addedElements The elements to add
+         */
+        Change(List<String> path, 
+            List<String> removedChildren, List<String> addedChildren, 
+            List<T> removedElements, List<T> addedElements)
+        {
+            this.path = Collections.unmodifiableList(path);
+            this.removedChildren = 
+                Collections.unmodifiableList(removedChildren);
+            this.addedChildren = 
+                Collections.unmodifiableList(addedChildren);
+            this.removedElements = 
+                Collections.unmodifiableList(removedElements);
+            this.addedElements = 
+                Collections.unmodifiableList(addedElements);
+        }
+        
+        /**
+         * Returns the path of the category, relative to the root 
+         * category, in the format that is described in 
+         * {@link Categories#resolve(Category, String)}. The path of
+         * the root category is the empty string.
+         * 
+         * @return The path
+         */
+        public String getPath()
+        {
+            return String.join("/", path);
+        }
+        
+        /**
+         * Returns an unmodifiable list containing the names of the 
+         * children that have to be removed from the category
+         * 
+         * @return The names
+         */
+        public List<String> getRemovedChildren()
+        {
+            return removedChildren;
+        }
+        
+        /**
+         * Returns an unmodifiable list containing the names of the 
+         * children that have to be added to the category. The children 
+         * and elements of these children are described by the changes 
+         * for their paths.
+         * 
+         * @return The names
+         */
+        public List<String> getAddedChildren()
+        {
+            return addedChildren;
+        }
+        
+        /**
+         * Returns an unmodifiable list containing the elements that 
+         * have to be removed from the category. For each occurrence 
+         * of an element in this list, one occurrence has to be 
+         * removed.
+         * 
+         * @return The elements
+         */
+        public List<T> getRemovedElements()
+        {
+            return removedElements;
+        }
+        
+        /**
+         * Returns an unmodifiable list containing the elements that 
+         * have to be added to the category, after the elements have
+         * been removed
+         * 
+         * @return The elements
+         */
+        public List<T> getAddedElements()
+        {
+            return addedElements;
+        }
+        
+        /**
+         * Apply this change to the category at the path of this change,
+         * relative to the given root
+         * 
+         * @param root The root category
+         * @throws IllegalArgumentException If there is no category at
+         * the path of this change
+         */
+        void applyTo(MutableCategory<T> root)
+        {
+            MutableCategory<T> category = root;
+            for (String name : path)
+            {
+                category = category.getChild(name);
+                if (category == null)
+                {
+                    throw new IllegalArgumentException(
+                        "There is no category at path " + getPath());
+                }
+            }
+            for (String name : removedChildren)
+            {
+                category.removeChild(name);
+            }
+            for (String name : addedChildren)
+            {
+                category.addChild(name);
+            }
+            if (!removedElements.isEmpty())
+            {
+                category.removeElements(removedElements);
+            }
+            if (!addedElements.isEmpty())
+            {
+                category.addElements(addedElements);
+            }
+        }
+        
+        @Override
+        public String toString()
+        {
+            return "Change[" + 
+                "path=" + getPath() + "," +
+                "removedChildren=" + removedChildren + "," + 
+                "addedChildren=" + addedChildren + "," + 
+                "removedElements=" + removedElements + "," + 
+                "addedElements=" + addedElements + "]";
+        }
+    }
+    
+    /**
+     * Computes the differences between the given categories
+     * 
+     * @param <T> The type of the elements in the {@link Category}
+     * 
+     * @param a The first category
+     * @param b The second category
+     * @return The {@link CategoryDiff}
+     */
+    static <T> CategoryDiff<T> compute(Category<T> a, Category<T> b)
+    {
+        Objects.requireNonNull(a, "The first category may not be null");
+        Objects.requireNonNull(b, "The second category may not be null");
+        List<Change<T>> changes = new ArrayList<Change<T>>();
+        computeChanges(a, b, new ArrayList<String>(), changes);
+        return new CategoryDiff<T>(changes);
+    }
+    
+    /**
+     * Computes the changes that transform the given category <code>a</code>
+     * into the given category <code>b</code>, recursively. If 
+     * <code>a</code> is <code>null</code>, then it is considered to be
+     * an empty category.
+     * 
+     * @param <T> The type of the elements in the {@link Category}
+     * 
+     * @param a The first category, or <code>null</code>
+     * @param b The second category
+     * @param path The names of the path of the categories
+     * @param changes The list that will receive the changes
+     */
+    private static <T> void computeChanges(Category<T> a, Category<T> b, 
+        List<String> path, List<Change<T>> changes)
+    {
+        if (a != null && isIdentical(a, b))
+        {
+            return;
+        }
+        
+        // Determine the children that are kept, removed or added. The
+        // children that are added will be appended to the kept ones. 
+        // When the order of the kept children is different in b, the 
+        // children whose order changed are replaced.
+        List<? extends Category<T>> aChildren = a == null ? 
+            Collections.<Category<T>>emptyList() : a.getChildren();
+        List<String> removedChildren = new ArrayList<String>();
+        List<Category<T>> kept = new ArrayList<Category<T>>();
+        for (Category<T> aChild : aChildren)
+        {
+            if (b.getChild(aChild.getName()) == null)
+            {
+                removedChildren.add(aChild.getName());
+            }
+            else
+            {
+                kept.add(aChild);
+            }
+        }
+        List<String> addedChildren = new ArrayList<String>();
+        List<Category<T>> commonA = new ArrayList<Category<T>>();
+        List<Category<T>> commonB = new ArrayList<Category<T>>();
+        List<Category<T>> added = new ArrayList<Category<T>>();
+        int keptIndex = 0;
+        for (Category<T> bChild : b.getChildren())
+        {
+            String name = bChild.getName();
+            if (added.isEmpty() && keptIndex < kept.size() && 
+                kept.get(keptIndex).getName().equals(name))
+            {
+                commonA.add(kept.get(keptIndex));
+                commonB.add(bChild);
+                keptIndex++;
+            }
+            else
+            {
+                if (a != null && a.getChild(name) != null)
+                {
+                    removedChildren.add(name);
+                }
+                addedChildren.add(name);
+                added.add(bChild);
+            }
+        }
+        
+        List<T> removedElements = new ArrayList<T>();
+        List<T> addedElements = new ArrayList<T>();
+        List<T> aElements = a == null ? 
+            Collections.<T>emptyList() : a.getElements();
+        computeElementChanges(
+            aElements, b.getElements(), removedElements, addedElements);
+        
+        if (!removedChildren.isEmpty() || !addedChildren.isEmpty() ||
+            !removedElements.isEmpty() || !addedElements.isEmpty())
+        {
+            changes.add(new Change<T>(new ArrayList<String>(path), 
+                removedChildren, addedChildren, 
+                removedElements, addedElements));
+        }
+        for (int i = 0; i < commonA.size(); i++)
+        {
+            path.add(commonB.get(i).getName());
+            computeChanges(commonA.get(i), commonB.get(i), path, changes);
+            path.remove(path.size() - 1);
+        }
+        for (Category<T> bChild : added)
+        {
+            path.add(bChild.getName());
+            computeChanges(null, bChild, path, changes);
+            path.remove(path.size() - 1);
+        }
+    }
+    
+    /**
+     * Returns whether the given categories are known to be equal, 
+     * without traversing them completely. This is the case when they
+     * are identical, or when they cache their hash codes, have equal
+     * hash codes, and are equal. 
+     * 
+     * @param a The first category
+     * @param b The second category
+     * @return Whether the categories are equal
+     */
+    private static boolean isIdentical(Category<?> a, Category<?> b)
+    {
+        if (a == b)
+        {
+            return true;
+        }
+        if (CategoryEquality.hasCachedHashCode(a) && 
+            CategoryEquality.hasCachedHashCode(b))
+        {
+            return a.hashCode() == b.hashCode() && 
+                a.getElements().equals(b.getElements()) && 
+                a.getChildren().equals(b.getChildren());
+        }
+        return false;
+    }
+    
+    /**
+     * Computes the elements that have to be removed from and added to 
+     * the list <code>a</code>, in order to obtain the list 
+     * <code>b</code>. The elements that are removed are the first 
+     * occurrences of the elements that appear more often in 
+     * <code>a</code> than in <code>b</code>, as by 
+     * {@link MutableCategory#removeElements(Iterable)}. The elements 
+     * that are added will be appended to the remaining elements. If 
+     * this does not result in the list <code>b</code>, because the 
+     * order of the elements changed, then all elements are replaced.
+     * 
+     * @param <T> The type of the elements in the {@link Category}
+     * 
+     * @param a The first list
+     * @param b The second list
+     * @param removed The list that will receive the removed elements
+     * @param added The list that will receive the added elements
+     */
+    private static <T> void computeElementChanges(List<T> a, List<T> b, 
+        List<T> removed, List<T> added)
+    {
+        if (a.isEmpty())
+        {
+            added.addAll(b);
+            return;
+        }
+        Map<Object, Integer> excess = new HashMap<Object, Integer>();
+        for (T element : a)
+        {
+            Integer count = excess.get(element);
+            excess.put(element, count == null ? 1 : count + 1);
+        }
+        for (T element : b)
+        {
+            Integer count = excess.get(element);
+            if (count != null)
+            {
+                excess.put(element, count - 1);
+            }
+        }
+        List<T> remaining = new ArrayList<T>(a.size());
+        for (T element : a)
+        {
+            Integer count = excess.get(element);
+            if (count > 0)
+            {
+                removed.add(element);
+                excess.put(element, count - 1);
+            }
+            else
+            {
+                remaining.add(element);
+            }
+        }
+        int n = remaining.size();
+        if (b.size() >= n && b.subList(0, n).equals(remaining))
+        {
+            added.addAll(b.subList(n, b.size()));
+        }
+        else
+        {
+            removed.clear();
+            removed.addAll(a);
+            added.addAll(b);
+        }
+    }
+    
+    /**
+     * The changes
+     */
+    private final List<Change<T>> changes;
+    
+    /**
+     * Creates a new instance
+     * 
+     * @param changes The changes
+     */
+    private CategoryDiff(List<Change<T>> changes)
+    {
+        this.changes = Collections.unmodifiableList(changes);
+    }
+    
+    /**
+     * Returns an unmodifiable list containing the changes, in the order
+     * in which they have to be applied
+     * 
+     * @return The changes
+     */
+    public List<Change<T>> getChanges()
+    {
+        return changes;
+    }
+    
+    /**
+     * Returns whether there are no changes
+     * 
+     * @return Whether there are no changes
+     */
+    public boolean isEmpty()
+    {
+        return changes.isEmpty();
+    }
+    
+    /**
+     * Apply this diff to the given {@link MutableCategory}. If the given
+     * category is equal to the first category that was used for 
+     * creating this diff, then it will afterwards be equal to the 
+     * second one, except for its name. The changes will be applied 
+     * during a 
+     * {@link MutableCategory#batch(java.util.function.Consumer) batch}.
+     * 
+     * @param category The {@link MutableCategory}
+     * @throws IllegalArgumentException If the category does not contain
+     * the categories at the paths of the changes. In this case, the 
+     * category may already have been modified partially.
+     */
+    public void applyTo(MutableCategory<T> category)
+    {
+        Objects.requireNonNull(category, "The category may not be null");
+        category.batch(new Consumer<MutableCategory<T>>()
+        {
+            @Override
+            public void accept(MutableCategory<T> c)
+            {
+                for (Change<T> change : changes)
+                {
+                    change.applyTo(category);
+                }
+            }
+        });
+    }
+    
+    @Override
+    public String toString()
+    {
+        return "CategoryDiff[changes=" + changes + "]";
+    }
+}
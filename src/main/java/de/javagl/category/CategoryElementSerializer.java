@@ -0,0 +1,63 @@
+/*
+ * www.javagl.de - Category
+ *
+ * Copyright (c) 2012-2017 Marco Hutter - http://www.javagl.de
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.javagl.category;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Interface for classes that can write the elements of a {@link Category}
+ * to a binary representation, and read them back. Instances of this 
+ * interface are used by a {@link CategoryCodec}. Implementations for
+ * common element types can be obtained from the {@link CategoryCodec}
+ * class.
+ * 
+ * @param <T> The type of the elements
+ */
+public interface CategoryElementSerializer<T>
+{
+    /**
+     * Write the given element to the given output
+     * 
+     * @param element The element
+     * @param output The output
+     * @throws IOException If an IO error occurs
+     */
+    void write(T element, DataOutput output) throws IOException;
+    
+    /**
+     * Read an element from the given buffer, starting at its current 
+     * position. This must read exactly the bytes that have been written 
+     * by {@link #write(Object, DataOutput)}, and leave the position of 
+     * the buffer after the last byte of the element.
+     * 
+     * @param buffer The buffer
+     * @return The element
+     */
+    T read(ByteBuffer buffer);
+}
@@ -0,0 +1,204 @@
+/*
+ * www.javagl.de - Category
+ *
+ * Copyright (c) 2012-2017 Marco Hutter - http://www.javagl.de
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.javagl.category;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Package-private implementation of a {@link Spliterator} over all 
+ * elements of a {@link Category} and its descendants. The elements are
+ * visited in pre-order: The elements of a category are visited before 
+ * the elements of its children. <br>
+ * <br>
+ * The children and elements of the categories are obtained lazily,
+ * while the elements are traversed. Splitting is done by assigning
+ * different subtrees to the resulting spliterators.
+ * 
+ * @param <T> The type of the elements
+ */
+final class CategoryElementSpliterator<T> implements Spliterator<T>
+{
+    /**
+     * The spliterator over the elements of the current category, 
+     * or <code>null</code> if there is no current category
+     */
+    private Spliterator<? extends T> current;
+    
+    /**
+     * The categories whose elements and children still have to 
+     * be visited, in pre-order
+     */
+    private final Deque<Category<? extends T>> pending;
+    
+    /**
+     * Creates a new spliterator for the elements of the given 
+     * {@link Category} and its descendants
+     * 
+     * @param category The {@link Category}
+     */
+    CategoryElementSpliterator(Category<? extends T> category)
+    {
+        this(null, new ArrayDeque<Category<? extends T>>());
+        pending.add(category);
+    }
+    
+    /**
+     * Creates a new spliterator that visits the given elements, and
+     * then the given categories
+     * 
+     * @param current The optional spliterator over the elements
+     * @param pending The pending categories
+     */
+    private CategoryElementSpliterator(Spliterator<? extends T> current,
+        Deque<Category<? extends T>> pending)
+    {
+        this.current = current;
+        this.pending = pending;
+    }
+    
+    /**
+     * Move to the next pending category, if there is one. This will
+     * set the {@link #current} spliterator to the elements of the
+     * next pending category, and insert the children of this
+     * category at the front of the pending categories.
+     * 
+     * @return Whether there was a pending category
+     */
+    private boolean advanceCategory()
+    {
+        Category<? extends T> category = pending.pollFirst();
+        if (category == null)
+        {
+            current = null;
+            return false;
+        }
+        current = category.getElements().spliterator();
+        List<? extends Category<? extends T>> children = 
+            category.getChildren();
+        for (int i = children.size() - 1; i >= 0; i--)
+        {
+            pending.addFirst(children.get(i));
+        }
+        return true;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super T> action)
+    {
+        while (true)
+        {
+            if (current != null && current.tryAdvance(action))
+            {
+                return true;
+            }
+            if (!advanceCategory())
+            {
+                return false;
+            }
+        }
+    }
+    
+    @Override
+    public void forEachRemaining(Consumer<? super T> action)
+    {
+        do
+        {
+            if (current != null)
+            {
+                current.forEachRemaining(action);
+            }
+        }
+        while (advanceCategory());
+    }
+
+    @Override
+    public Spliterator<T> trySplit()
+    {
+        if (pending.isEmpty())
+        {
+            if (current == null)
+            {
+                return null;
+            }
+            Spliterator<? extends T> prefix = current.trySplit();
+            if (prefix == null)
+            {
+                return null;
+            }
+            return new CategoryElementSpliterator<T>(prefix, 
+                new ArrayDeque<Category<? extends T>>());
+        }
+        if (pending.size() == 1)
+        {
+            if (current == null || current.estimateSize() == 0)
+            {
+                // Expand the only pending category, so that its 
+                // children may be split in the next attempt
+                advanceCategory();
+                return trySplit();
+            }
+            Spliterator<? extends T> prefix = current;
+            current = null;
+            return new CategoryElementSpliterator<T>(prefix, 
+                new ArrayDeque<Category<? extends T>>());
+        }
+        int n = pending.size() / 2;
+        Deque<Category<? extends T>> prefixPending = 
+            new ArrayDeque<Category<? extends T>>(n);
+        for (int i = 0; i < n; i++)
+        {
+            prefixPending.addLast(pending.pollFirst());
+        }
+        Spliterator<? extends T> prefix = current;
+        current = null;
+        return new CategoryElementSpliterator<T>(prefix, prefixPending);
+    }
+
+    @Override
+    public long estimateSize()
+    {
+        if (pending.isEmpty())
+        {
+            if (current == null)
+            {
+                return 0;
+            }
+            return current.estimateSize();
+        }
+        return Long.MAX_VALUE;
+    }
+
+    @Override
+    public int characteristics()
+    {
+        return ORDERED;
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * www.javagl.de - Category
+ *
+ * Copyright (c) 2012-2017 Marco Hutter - http://www.javagl.de
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.javagl.category;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Package-private utility methods for the implementation of 
+ * {@link Object#equals(Object)} and {@link Object#hashCode()} in the
+ * {@link Category} implementations.<br>
+ * <br>
+ * Two categories are equal when they have the same name, equal 
+ * children and equal elements, in the same order. The hash code of 
+ * a category is computed from the name, the hash codes of the children
+ * and the elements, in the same way as 
+ * <code>Objects.hash(name, children, elements)</code>. Implementations
+ * may cache their hash code, so that it can be computed from the cached 
+ * hash codes of the children, like in a Merkle tree. Mutable 
+ * implementations may additionally cache the hash code of their
+ * elements, so that a modification of a descendant does not require 
+ * the elements of all ancestors to be hashed again.
+ */
+class CategoryEquality
+{
+    /**
+     * Computes the hash code of the given {@link Category}, based on
+     * the hash codes of its children
+     * 
+     * @param category The {@link Category}
+     * @return The hash code
+     */
+    static int hashCode(Category<?> category)
+    {
+        return hashCode(category, category.getElements().hashCode());
+    }
+    
+    /**
+     * Computes the hash code of the given {@link Category}, based on
+     * the hash codes of its children, and the given hash code of the
+     * list of its elements
+     * 
+     * @param category The {@link Category}
+     * @param elementsHashCode The hash code of the list of elements
+     * @return The hash code
+     */
+    static int hashCode(Category<?> category, int elementsHashCode)
+    {
+        int result = 31 + category.getName().hashCode();
+        result = 31 * result + category.getChildren().hashCode();
+        result = 31 * result + elementsHashCode;
+        return result;
+    }
+    
+    /**
+     * Returns whether the given {@link Category} is equal to the given
+     * object. <br>
+     * <br>
+     * If both objects are categories that cache their hash codes, then
+     * the hash codes are compared first, so that different categories
+     * can be detected without traversing their children. Identical 
+     * children will not be traversed. 
+     * 
+     * @param category The {@link Category}
+     * @param object The object
+     * @return Whether the objects are equal
+     */
+    static boolean equals(Category<?> category, Object object)
+    {
+        if (category == object)
+        {
+            return true;
+        }
+        if (object == null)
+        {
+            return false;
+        }
+        if (!(object instanceof Category))
+        {
+            return false;
+        }
+        Category<?> other = (Category<?>) object;
+        if (hasCachedHashCode(category) && hasCachedHashCode(other))
+        {
+            if (category.hashCode() != other.hashCode())
+            {
+                return false;
+            }
+        }
+        if (!Objects.equals(category.getName(), other.getName()))
+        {
+            return false;
+        }
+        List<? extends Category<?>> children = category.getChildren();
+        List<? extends Category<?>> otherChildren = other.getChildren();
+        if (children.size() != otherChildren.size())
+        {
+            return false;
+        }
+        List<?> elements = category.getElements();
+        List<?> otherElements = other.getElements();
+        if (elements.size() != otherElements.size())
+        {
+            return false;
+        }
+        for (int i = 0; i < children.size(); i++)
+        {
+            Category<?> child = children.get(i);
+            Category<?> otherChild = otherChildren.get(i);
+            if (child != otherChild && !child.equals(otherChild))
+            {
+                return false;
+            }
+        }
+        return elements.equals(otherElements);
+    }
+    
+    /**
+     * Returns whether the given {@link Category} caches its hash code,
+     * so that calling {@link Object#hashCode()} is cheap.
+     * 
+     * @param category The {@link Category}
+     * @return Whether the category caches its hash code
+     */
+    static boolean hasCachedHashCode(Category<?> category)
+    {
+        return category instanceof DefaultCategory<?> ||
+            category instanceof ImmutableCategory<?> ||
+            category instanceof AbstractPrimitiveCategory<?, ?> ||
+            category instanceof CompactCategory<?> ||
+            category instanceof MappedCategory<?>;
+    }
+
+    /**
+     * Private constructor to prevent instantiation
+     */
+    private CategoryEquality()
+    {
+        // Private constructor to prevent instantiation
+    }
+}
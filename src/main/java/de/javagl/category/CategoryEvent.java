@@ -1,125 +1,242 @@
-/*
- * www.javagl.de - Category
- *
- * Copyright (c) 2012-2017 Marco Hutter - http://www.javagl.de
- * 
- * Permission is hereby granted, free of charge, to any person
- * obtaining a copy of this software and associated documentation
- * files (the "Software"), to deal in the Software without
- * restriction, including without limitation the rights to use,
- * copy, modify, merge, publish, distribute, sublicense, and/or sell
- * copies of the Software, and to permit persons to whom the
- * Software is furnished to do so, subject to the following
- * conditions:
- * 
- * The above copyright notice and this permission notice shall be
- * included in all copies or substantial portions of the Software.
- * 
- * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
- * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
- * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
- * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
- * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
- * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
- * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
- * OTHER DEALINGS IN THE SOFTWARE.
- */
-package de.javagl.category;
-
-import java.util.Collections;
-import java.util.EventObject;
-import java.util.LinkedHashSet;
-import java.util.Set;
-
-/**
- * A class describing a change in a {@link Category}
- *
- * @param <T> The type of the elements in the {@link Category}
- */
-public final class CategoryEvent<T> extends EventObject
-{
-    /**
-     * The {@link Category} from which this event originated
-     */
-    private final Category<T> category; 
-    
-    /**
-     * The elements that have been added to or removed from the {@link Category}
-     */
-    private final Set<T> elements;
-    
-    /**
-     * The child that was added to or removed from the {@link Category}
-     */
-    private final Category<T> child;
-    
-    /**
-     * Creates a new event that describes a change in the given 
-     * {@link Category}. It will store a copy of the given sequence of
-     * elements (or an empty set, if the given sequence is <code>null</code>)
-     * 
-     * @param category The {@link Category} from which this event originated
-     * @param elements The elements that have been added or removed
-     * @param child The child that was added or removed
-     */
-    CategoryEvent(Category<T> category, Iterable<? extends T> elements, 
-        Category<T> child)
-    {
-        super(category);
-        this.category = category;
-        if (elements == null)
-        {
-            this.elements = Collections.emptySet();
-        }
-        else
-        {
-            Set<T> e = new LinkedHashSet<T>();
-            for (T element : elements)
-            {
-                e.add(element);
-            }
-            this.elements = Collections.unmodifiableSet(e);
-        }
-        this.child = child;
-    }
-    
-    /**
-     * Returns the {@link Category} from which this event originated
-     * 
-     * @return The {@link Category} from which this event originated
-     */
-    public Category<T> getCategory()
-    {
-        return category;
-    }
-    
-    /**
-     * Returns an unmodifiable set containing the elements that have been
-     * added or removed
-     * 
-     * @return The elements that was added or removed
-     */
-    public Set<T> getElements()
-    {
-        return elements;
-    }
-    
-    /**
-     * Returns the child that was added or removed
-     * 
-     * @return The child that was added or removed
-     */
-    public Category<T> getChild()
-    {
-        return child;
-    }
-    
-    @Override
-    public String toString()
-    {
-        return "CategoryEvent["+
-            "category="+category+","+
-            "elements="+elements+","+
-            "child="+child+"]";
-    }
-}
+/*
+ * www.javagl.de - Category
+ *
+ * Copyright (c) 2012-2017 Marco Hutter - http://www.javagl.de
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.javagl.category;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EventObject;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A class describing a change in a {@link Category}
+ *
+ * @param <T> The type of the elements in the {@link Category}
+ */
+public final class CategoryEvent<T> extends EventObject
+{
+    /**
+     * The {@link Category} from which this event originated
+     */
+    private final Category<T> category; 
+    
+    /**
+     * The sequence of elements that have been added to or removed from 
+     * the {@link Category}, including duplicates. This is either a copy
+     * that was created in the constructor, or a sequence that is owned 
+     * by the category and never modified.
+     */
+    private final Iterable<? extends T> elementsSource;
+    
+    /**
+     * The unmodifiable set of elements that have been added to or removed 
+     * from the {@link Category}. This is created lazily, from the 
+     * {@link #elementsSource}, when it is requested for the first time.
+     */
+    private volatile Set<T> elements;
+    
+    /**
+     * The children that have been added to or removed from the 
+     * {@link Category}
+     */
+    private final List<Category<T>> children;
+    
+    /**
+     * Creates a new event that describes a change in the given 
+     * {@link Category}. It will store a copy of the given elements and
+     * of the given list of children (or an empty set or list, if the 
+     * respective argument is <code>null</code>).
+     * 
+     * @param category The {@link Category} from which this event originated
+     * @param elements The elements that have been added or removed
+     * @param children The children that have been added or removed
+     */
+    CategoryEvent(Category<T> category, Iterable<? extends T> elements, 
+        List<? extends Category<T>> children)
+    {
+        this(category, elements, children, true);
+    }
+    
+    /**
+     * Creates a new event that describes a change in the given 
+     * {@link Category}. It will store a copy of the given list of 
+     * children (or an empty list, if the given list is <code>null</code>).
+     * <br>
+     * <br>
+     * If <code>copyElements</code> is <code>true</code>, then a copy of
+     * the given elements will be stored. Otherwise, the given sequence 
+     * of elements will be stored directly. This may only be used for 
+     * sequences that are owned by the library and that are never 
+     * modified after the event was created. In both cases, the set of
+     * elements will only be created when the elements are requested 
+     * for the first time.
+     * 
+     * @param category The {@link Category} from which this event originated
+     * @param elements The elements that have been added or removed
+     * @param children The children that have been added or removed
+     * @param copyElements Whether the elements should be copied 
+     * immediately
+     */
+    CategoryEvent(Category<T> category, Iterable<? extends T> elements, 
+        List<? extends Category<T>> children, boolean copyElements)
+    {
+        super(category);
+        this.category = category;
+        if (elements == null)
+        {
+            this.elementsSource = Collections.emptyList();
+        }
+        else if (copyElements)
+        {
+            List<T> list = new ArrayList<T>();
+            for (T element : elements)
+            {
+                list.add(element);
+            }
+            this.elementsSource = list;
+        }
+        else
+        {
+            this.elementsSource = elements;
+        }
+        if (children == null)
+        {
+            this.children = Collections.emptyList();
+        }
+        else if (children.size() == 1)
+        {
+            this.children = Collections.<Category<T>>singletonList(
+                children.get(0));
+        }
+        else
+        {
+            this.children = Collections.unmodifiableList(
+                new ArrayList<Category<T>>(children));
+        }
+    }
+    
+    /**
+     * Returns the {@link Category} from which this event originated
+     * 
+     * @return The {@link Category} from which this event originated
+     */
+    public Category<T> getCategory()
+    {
+        return category;
+    }
+    
+    /**
+     * Returns an unmodifiable set containing the elements that have been
+     * added or removed. <br>
+     * <br>
+     * This set is not affected by later modifications of the category,
+     * or of the sequence of elements that was passed to the method that
+     * caused this event. For events whose elements are owned by the 
+     * category, this set may be created when this method is called for 
+     * the first time, so that events can be dispatched without copying 
+     * the elements when the listeners are not interested in them.
+     * 
+     * @return The elements that was added or removed
+     */
+    public Set<T> getElements()
+    {
+        Set<T> result = elements;
+        if (result == null)
+        {
+            result = copy(elementsSource);
+            elements = result;
+        }
+        return result;
+    }
+    
+    /**
+     * Returns the sequence of elements that have been added or removed, 
+     * including duplicates. This sequence may not be modified.
+     * 
+     * @return The elements
+     */
+    Iterable<? extends T> getElementSequence()
+    {
+        return elementsSource;
+    }
+    
+    /**
+     * Creates an unmodifiable set containing the given elements
+     * 
+     * @param <T> The type of the elements
+     * 
+     * @param elements The elements
+     * @return The set
+     */
+    private static <T> Set<T> copy(Iterable<? extends T> elements)
+    {
+        Set<T> result = new LinkedHashSet<T>();
+        for (T element : elements)
+        {
+            result.add(element);
+        }
+        return Collections.unmodifiableSet(result);
+    }
+    
+    /**
+     * Returns the child that was added or removed. If multiple children
+     * have been added or removed at once, then this is the first one of
+     * the {@link #getChildren() children}. If no child was added or 
+     * removed, then this is <code>null</code>.
+     * 
+     * @return The child that was added or removed
+     */
+    public Category<T> getChild()
+    {
+        if (children.isEmpty())
+        {
+            return null;
+        }
+        return children.get(0);
+    }
+    
+    /**
+     * Returns an unmodifiable (possibly empty) list containing the 
+     * children that have been added or removed
+     * 
+     * @return The children that have been added or removed
+     */
+    public List<Category<T>> getChildren()
+    {
+        return children;
+    }
+    
+    @Override
+    public String toString()
+    {
+        return "CategoryEvent["+
+            "category="+category+","+
+            "elements="+getElements()+","+
+            "children="+children+"]";
+    }
+}
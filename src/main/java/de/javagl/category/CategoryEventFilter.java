@@ -0,0 +1,323 @@
+/*
+ * www.javagl.de - Category
+ *
+ * Copyright (c) 2012-2017 Marco Hutter - http://www.javagl.de
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.javagl.category;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * A filter for the {@link CategoryEvent}s that a {@link CategoryListener}
+ * should receive. It may be passed to 
+ * {@link Category#addCategoryListener(CategoryListener, CategoryEventFilter)}.
+ * <br>
+ * <br>
+ * Instances of this class are immutable. An instance that accepts all
+ * events can be obtained with {@link #all()}, and restricted with the
+ * <code>with...</code> methods:
+ * <pre><code>
+ * CategoryEventFilter filter = CategoryEventFilter.all()
+ *     .withTypes(CategoryEventType.ELEMENTS_ADDED)
+ *     .withPath("Animals/Mammals")
+ *     .withMaxDepth(3);
+ * </code></pre>
+ * Events that are not accepted by the filters of any listener will not
+ * be created at all.
+ */
+public final class CategoryEventFilter
+{
+    /**
+     * The filter that accepts all events
+     */
+    private static final CategoryEventFilter ALL = new CategoryEventFilter(
+        EnumSet.allOf(CategoryEventType.class), Integer.MAX_VALUE, 
+        Collections.<String>emptyList());
+    
+    /**
+     * Returns a filter that accepts all events
+     * 
+     * @return The filter
+     */
+    public static CategoryEventFilter all()
+    {
+        return ALL;
+    }
+    
+    /**
+     * The types of the accepted events
+     */
+    private final Set<CategoryEventType> types;
+    
+    /**
+     * The maximum depth of the categories where accepted events may
+     * originate
+     */
+    private final int maxDepth;
+    
+    /**
+     * The names of the path of the subtree where accepted events 
+     * may originate
+     */
+    private final List<String> path;
+    
+    /**
+     * Creates a new instance
+     * 
+     * @param types The types of the accepted events
+     * @param maxDepth The maximum depth 
+     * @param path The names of the path
+     */
+    private CategoryEventFilter(
+        Set<CategoryEventType> types, int maxDepth, List<String> path)
+    {
+        this.types = Collections.unmodifiableSet(types);
+        this.maxDepth = maxDepth;
+        this.path = Collections.unmodifiableList(path);
+    }
+    
+    /**
+     * Returns a new filter that only accepts the events of the given 
+     * types, and is otherwise equal to this one
+     * 
+     * @param first The first type
+     * @param rest The remaining types
+     * @return The new filter
+     */
+    public CategoryEventFilter withTypes(
+        CategoryEventType first, CategoryEventType ... rest)
+    {
+        Objects.requireNonNull(first, "The first type may not be null");
+        return new CategoryEventFilter(EnumSet.of(first, rest), maxDepth, path);
+    }
+    
+    /**
+     * Returns a new filter that only accepts events from categories with
+     * at most the given depth, and is otherwise equal to this one. The
+     * depth is measured relative to the category that the listener is
+     * attached to. A depth of 0 refers to this category itself, and a 
+     * depth of 1 refers to its children.
+     * 
+     * @param maxDepth The maximum depth
+     * @return The new filter
+     * @throws IllegalArgumentException If the maximum depth is negative
+     */
+    public CategoryEventFilter withMaxDepth(int maxDepth)
+    {
+        if (maxDepth < 0)
+        {
+            throw new IllegalArgumentException(
+                "The maximum depth may not be negative, but is " + maxDepth);
+        }
+        return new CategoryEventFilter(
+            EnumSet.copyOf(types), maxDepth, path);
+    }
+    
+    /**
+     * Returns a new filter that only accepts events from the subtree at
+     * the given path, and is otherwise equal to this one. The path is 
+     * relative to the category that the listener is attached to. See
+     * {@link Categories#resolve(Category, String)} for details about the 
+     * format of the path. 
+     * 
+     * @param path The path
+     * @return The new filter
+     * @throws IllegalArgumentException If the path contains an empty name
+     */
+    public CategoryEventFilter withPath(String path)
+    {
+        return new CategoryEventFilter(EnumSet.copyOf(types), maxDepth, 
+            Categories.splitPath(path));
+    }
+    
+    /**
+     * Returns an unmodifiable set containing the types of the events
+     * that are accepted by this filter
+     * 
+     * @return The types
+     */
+    public Set<CategoryEventType> getTypes()
+    {
+        return types;
+    }
+    
+    /**
+     * Returns the maximum depth of the categories where the events that
+     * are accepted by this filter may originate
+     * 
+     * @return The maximum depth
+     */
+    public int getMaxDepth()
+    {
+        return maxDepth;
+    }
+    
+    /**
+     * Returns the path of the subtree where the events that are accepted 
+     * by this filter may originate
+     * 
+     * @return The path
+     */
+    public String getPath()
+    {
+        return String.join("/", path);
+    }
+    
+    /**
+     * Returns whether this filter accepts the described event
+     * 
+     * @param type The type of the event
+     * @param depth The depth of the category where the event originated,
+     * relative to the category that the listener is attached to
+     * @param pathNode The path to the category where the event originated
+     * @return Whether the event is accepted
+     */
+    boolean matches(CategoryEventType type, int depth, 
+        CategoryListenerSupport.PathNode pathNode)
+    {
+        if (!types.contains(type))
+        {
+            return false;
+        }
+        if (depth > maxDepth)
+        {
+            return false;
+        }
+        if (depth < path.size())
+        {
+            return false;
+        }
+        CategoryListenerSupport.PathNode node = pathNode;
+        for (String name : path)
+        {
+            if (!name.equals(node.name))
+            {
+                return false;
+            }
+            node = node.next;
+        }
+        return true;
+    }
+    
+    /**
+     * Returns whether this filter accepts the described event. This
+     * is used when the path from the given category to the category 
+     * where the event originated is not known. If this filter does not
+     * restrict the path or the depth, then all events of the accepted 
+     * types are accepted. Otherwise, it will search for the origin in 
+     * the subtree that is described by this filter, level by level, 
+     * up to the maximum depth.
+     * 
+     * @param type The type of the event
+     * @param category The category that the listener is attached to
+     * @param origin The category where the event originated
+     * @return Whether the event is accepted
+     */
+    boolean matches(CategoryEventType type, Category<?> category, 
+        Category<?> origin)
+    {
+        if (!types.contains(type))
+        {
+            return false;
+        }
+        if (path.isEmpty() && maxDepth == Integer.MAX_VALUE)
+        {
+            // All events reach the listener from the subtree of the
+            // category, so they do not have to be located
+            return true;
+        }
+        if (maxDepth < path.size())
+        {
+            return false;
+        }
+        Category<?> current = category;
+        for (String name : path)
+        {
+            current = current.getChild(name);
+            if (current == null)
+            {
+                return false;
+            }
+        }
+        return contains(current, origin, maxDepth - path.size());
+    }
+    
+    /**
+     * Returns whether the given category is the given origin, or one of
+     * its descendants, up to the given depth. The descendants are 
+     * searched level by level, so that only the levels up to the level
+     * of the origin are visited.
+     * 
+     * @param category The category
+     * @param origin The category to search for
+     * @param maxDepth The maximum depth
+     * @return Whether the origin was found
+     */
+    private static boolean contains(Category<?> category, 
+        Category<?> origin, int maxDepth)
+    {
+        List<Category<?>> level = 
+            Collections.<Category<?>>singletonList(category);
+        int depth = 0;
+        while (true)
+        {
+            for (Category<?> c : level)
+            {
+                if (c == origin)
+                {
+                    return true;
+                }
+            }
+            if (depth >= maxDepth)
+            {
+                return false;
+            }
+            List<Category<?>> nextLevel = new ArrayList<Category<?>>();
+            for (Category<?> c : level)
+            {
+                nextLevel.addAll(c.getChildren());
+            }
+            if (nextLevel.isEmpty())
+            {
+                return false;
+            }
+            level = nextLevel;
+            depth++;
+        }
+    }
+    
+    @Override
+    public String toString()
+    {
+        return "CategoryEventFilter["+
+            "types="+types+","+
+            "maxDepth="+maxDepth+","+
+            "path="+getPath()+"]";
+    }
+}
@@ -0,0 +1,325 @@
+/*
+ * www.javagl.de - Category
+ *
+ * Copyright (c) 2012-2017 Marco Hutter - http://www.javagl.de
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.javagl.category;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+
+/**
+ * Package-private implementation of a <code>Collector</code> that 
+ * groups elements into a {@link MutableCategory} hierarchy, based
+ * on a function that assigns a path to each element. Instances of 
+ * this class are created with 
+ * {@link Categories#groupingBy(Function, String)}.<br>
+ * <br>
+ * The elements are accumulated into lightweight partial trees. In
+ * parallel streams, the partial trees are combined with a structural 
+ * merge, where subtrees that only exist in one of the trees are 
+ * adopted without being copied. The final hierarchy of 
+ * {@link DefaultCategory} instances is created by the finisher, 
+ * without firing any events.
+ * 
+ * @param <T> The type of the elements
+ */
+final class CategoryGroupingCollector<T> 
+    implements Collector<T, CategoryGroupingCollector.Partial<T>, 
+        MutableCategory<T>>
+{
+    /**
+     * A node of a partial tree
+     * 
+     * @param <T> The type of the elements
+     */
+    private static final class Node<T>
+    {
+        /**
+         * The name of the node
+         */
+        private final String name;
+        
+        /**
+         * The children of the node, mapped by their names, which are
+         * created lazily
+         */
+        private Map<String, Node<T>> children;
+        
+        /**
+         * The elements of the node
+         */
+        private final List<T> elements;
+        
+        /**
+         * Creates a new instance
+         * 
+         * @param name The name of the node
+         */
+        Node(String name)
+        {
+            this.name = name;
+            this.elements = new ArrayList<T>();
+        }
+        
+        /**
+         * Returns the child with the given name, creating it if 
+         * necessary
+         * 
+         * @param childName The name of the child
+         * @return The child
+         */
+        Node<T> getOrCreateChild(String childName)
+        {
+            if (children == null)
+            {
+                children = new LinkedHashMap<String, Node<T>>();
+            }
+            Node<T> child = children.get(childName);
+            if (child == null)
+            {
+                child = new Node<T>(childName);
+                children.put(childName, child);
+            }
+            return child;
+        }
+        
+        /**
+         * Merge the given node into this one. The elements of the given
+         * node will be appended to the elements of this node. Children 
+         * of the given node that do not exist in this node will be 
+         * adopted, and the other children will be merged recursively.
+         * 
+         * @param other The other node
+         */
+        void merge(Node<T> other)
+        {
+            elements.addAll(other.elements);
+            if (other.children == null)
+            {
+                return;
+            }
+            if (children == null)
+            {
+                children = other.children;
+                return;
+            }
+            for (Node<T> otherChild : other.children.values())
+            {
+                Node<T> child = children.get(otherChild.name);
+                if (child == null)
+                {
+                    children.put(otherChild.name, otherChild);
+                }
+                else
+                {
+                    child.merge(otherChild);
+                }
+            }
+        }
+        
+        /**
+         * Creates a {@link DefaultCategory} hierarchy from this node
+         * and its descendants
+         * 
+         * @return The {@link DefaultCategory}
+         */
+        DefaultCategory<T> toCategory()
+        {
+            DefaultCategory<T> category = new DefaultCategory<T>(name);
+            category.addElements(elements);
+            if (children != null)
+            {
+                for (Node<T> child : children.values())
+                {
+                    category.addChild(child.toCategory());
+                }
+            }
+            return category;
+        }
+    }
+    
+    /**
+     * The accumulation type of the collector, consisting of the root
+     * of a partial tree and a cache for the paths that have been
+     * resolved
+     * 
+     * @param <T> The type of the elements
+     */
+    static final class Partial<T>
+    {
+        /**
+         * The root node
+         */
+        private final Node<T> root;
+        
+        /**
+         * The mapping from paths to the nodes that have been created
+         * for them
+         */
+        private final Map<String, Node<T>> nodes;
+        
+        /**
+         * Creates a new instance
+         * 
+         * @param rootName The name of the root node
+         */
+        Partial(String rootName)
+        {
+            this.root = new Node<T>(rootName);
+            this.nodes = new HashMap<String, Node<T>>();
+        }
+        
+        /**
+         * Add the given element to the node at the given path, creating
+         * all nodes along the path that do not exist yet
+         * 
+         * @param path The path
+         * @param element The element
+         */
+        void add(String path, T element)
+        {
+            Node<T> node = nodes.get(path);
+            if (node == null)
+            {
+                node = root;
+                for (String name : Categories.splitPath(path))
+                {
+                    node = node.getOrCreateChild(name);
+                }
+                nodes.put(path, node);
+            }
+            node.elements.add(element);
+        }
+        
+        /**
+         * Merge the given partial result into this one, and return this
+         * one. The path cache of this partial result remains valid, 
+         * because no nodes of this partial result are replaced.
+         * 
+         * @param other The other partial result
+         * @return This partial result
+         */
+        Partial<T> merge(Partial<T> other)
+        {
+            root.merge(other.root);
+            return this;
+        }
+    }
+    
+    /**
+     * The name of the root category
+     */
+    private final String rootName;
+    
+    /**
+     * The function that assigns a path to each element
+     */
+    private final Function<? super T, String> pathFunction;
+    
+    /**
+     * Creates a new instance
+     * 
+     * @param pathFunction The function that assigns a path to each 
+     * element
+     * @param rootName The name of the root category
+     */
+    CategoryGroupingCollector(
+        Function<? super T, String> pathFunction, String rootName)
+    {
+        this.pathFunction = Objects.requireNonNull(
+            pathFunction, "The pathFunction may not be null");
+        this.rootName = Objects.requireNonNull(
+            rootName, "The rootName may not be null");
+    }
+
+    @Override
+    public Supplier<Partial<T>> supplier()
+    {
+        return new Supplier<Partial<T>>()
+        {
+            @Override
+            public Partial<T> get()
+            {
+                return new Partial<T>(rootName);
+            }
+        };
+    }
+
+    @Override
+    public BiConsumer<Partial<T>, T> accumulator()
+    {
+        return new BiConsumer<Partial<T>, T>()
+        {
+            @Override
+            public void accept(Partial<T> partial, T element)
+            {
+                partial.add(pathFunction.apply(element), element);
+            }
+        };
+    }
+
+    @Override
+    public BinaryOperator<Partial<T>> combiner()
+    {
+        return new BinaryOperator<Partial<T>>()
+        {
+            @Override
+            public Partial<T> apply(Partial<T> left, Partial<T> right)
+            {
+                return left.merge(right);
+            }
+        };
+    }
+
+    @Override
+    public Function<Partial<T>, MutableCategory<T>> finisher()
+    {
+        return new Function<Partial<T>, MutableCategory<T>>()
+        {
+            @Override
+            public MutableCategory<T> apply(Partial<T> partial)
+            {
+                return partial.root.toCategory();
+            }
+        };
+    }
+
+    @Override
+    public Set<Characteristics> characteristics()
+    {
+        return Collections.emptySet();
+    }
+}
@@ -0,0 +1,305 @@
+/*
+ * www.javagl.de - Category
+ *
+ * Copyright (c) 2012-2017 Marco Hutter - http://www.javagl.de
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.javagl.category;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * A class for importing elements into a {@link MutableCategory} 
+ * hierarchy from text, where each line consists of a path and an
+ * element, separated by a tab character:
+ * <pre><code>
+ * Animals/Mammals/Cat&lt;TAB&gt;felix
+ * Animals/Birds&lt;TAB&gt;tweety
+ * </code></pre>
+ * where <code>&lt;TAB&gt;</code> is a tab character. 
+ * Instances of this class may be created with 
+ * {@link Categories#createImporter(Function)}, with a function that 
+ * creates the elements from the strings after the tab characters.
+ * See {@link Categories#resolve(Category, String)} for details about 
+ * the format of the paths. An empty path refers to the root category. 
+ * Empty lines are ignored.<br>
+ * <br>
+ * The input is processed in a single pass, and may be sorted or 
+ * unsorted. The elements are collected for each category, and added
+ * to the categories with a single call to 
+ * {@link MutableCategory#addElements(Iterable)} whenever the number of 
+ * collected elements reaches the buffer size, and at the end of the 
+ * input. Each of these steps is performed as a 
+ * {@link MutableCategory#batch(Consumer) batch}, so that listeners 
+ * receive one coalesced event for each category whenever the buffered
+ * elements are added. The memory that is required for the import 
+ * therefore does not depend on the size of the input, but only on 
+ * the buffer size and the number of categories. (When the import is
+ * performed during the action of another batch, then the events will
+ * only be fired when this batch is completed.)<br>
+ * <br>
+ * The import is not atomic: When the import fails, for example, due to 
+ * an IO error or an invalid line, then the elements from all lines 
+ * before the failing line will already have been added to the 
+ * categories, and the categories along the paths that have been 
+ * encountered until then will already have been created.<br>
+ * <br>
+ * This class is not thread-safe.
+ * 
+ * @param <T> The type of the elements in the {@link Category}
+ */
+public final class CategoryImporter<T>
+{
+    /**
+     * The default number of elements that are collected before they are
+     * added to the categories
+     */
+    private static final int DEFAULT_BUFFER_SIZE = 65536;
+    
+    /**
+     * The function that creates the elements from strings
+     */
+    private final Function<? super String, ? extends T> elementParser;
+    
+    /**
+     * The maximum number of elements that are collected before they are
+     * added to the categories
+     */
+    private int bufferSize;
+    
+    /**
+     * Creates a new instance
+     * 
+     * @param elementParser The function that creates the elements from 
+     * strings
+     */
+    CategoryImporter(Function<? super String, ? extends T> elementParser)
+    {
+        this.elementParser = Objects.requireNonNull(
+            elementParser, "The elementParser may not be null");
+        this.bufferSize = DEFAULT_BUFFER_SIZE;
+    }
+    
+    /**
+     * Set the maximum number of elements that are collected before they 
+     * are added to the categories. The default value is 65536.
+     * 
+     * @param bufferSize The buffer size
+     * @return This importer
+     * @throws IllegalArgumentException If the buffer size is not positive
+     */
+    public CategoryImporter<T> setBufferSize(int bufferSize)
+    {
+        if (bufferSize <= 0)
+        {
+            throw new IllegalArgumentException(
+                "The bufferSize must be positive, but is " + bufferSize);
+        }
+        this.bufferSize = bufferSize;
+        return this;
+    }
+    
+    /**
+     * Import the elements from the given file, which is read with the
+     * UTF-8 encoding, into the given {@link MutableCategory} hierarchy
+     * 
+     * @param path The path of the file
+     * @param category The root {@link MutableCategory}
+     * @return The number of elements that have been imported
+     * @throws IOException If an IO error occurs, or a line does not
+     * contain a tab character. The elements from the preceding lines 
+     * will then already have been imported.
+     * @throws IllegalArgumentException If a path contains an empty name.
+     * The elements from the preceding lines will then already have been
+     * imported.
+     */
+    public long importFrom(Path path, MutableCategory<T> category) 
+        throws IOException
+    {
+        Objects.requireNonNull(path, "The path may not be null");
+        try (Reader reader = 
+            Files.newBufferedReader(path, StandardCharsets.UTF_8))
+        {
+            return importFrom(reader, category);
+        }
+    }
+    
+    /**
+     * Import the elements from the given reader into the given 
+     * {@link MutableCategory} hierarchy. The caller is responsible
+     * for closing the reader.
+     * 
+     * @param reader The reader
+     * @param category The root {@link MutableCategory}
+     * @return The number of elements that have been imported
+     * @throws IOException If an IO error occurs, or a line does not
+     * contain a tab character. The elements from the preceding lines 
+     * will then already have been imported.
+     * @throws IllegalArgumentException If a path contains an empty name.
+     * The elements from the preceding lines will then already have been
+     * imported.
+     */
+    public long importFrom(Reader reader, MutableCategory<T> category) 
+        throws IOException
+    {
+        Objects.requireNonNull(reader, "The reader may not be null");
+        Objects.requireNonNull(category, "The category may not be null");
+        BufferedReader bufferedReader = 
+            reader instanceof BufferedReader ? 
+            (BufferedReader) reader : new BufferedReader(reader);
+        return importLines(bufferedReader, category);
+    }
+    
+    /**
+     * Import the elements from the lines of the given reader into
+     * the given {@link MutableCategory} hierarchy
+     * 
+     * @param reader The reader
+     * @param category The root {@link MutableCategory}
+     * @return The number of elements that have been imported
+     * @throws IOException If an IO error occurs, or a line does not
+     * contain a tab character
+     */
+    private long importLines(BufferedReader reader, 
+        MutableCategory<T> category) throws IOException
+    {
+        CategoryPathResolver<T> resolver = 
+            new CategoryPathResolver<T>(category);
+        Map<MutableCategory<T>, List<T>> buffers = 
+            new IdentityHashMap<MutableCategory<T>, List<T>>();
+        long count = 0;
+        int buffered = 0;
+        String previousPath = null;
+        List<T> previousBuffer = null;
+        try
+        {
+            long lineNumber = 0;
+            while (true)
+            {
+                String line = reader.readLine();
+                if (line == null)
+                {
+                    break;
+                }
+                lineNumber++;
+                if (line.isEmpty())
+                {
+                    continue;
+                }
+                int tab = line.indexOf('\t');
+                if (tab == -1)
+                {
+                    throw new IOException("No tab character in line " 
+                        + lineNumber + ": " + line);
+                }
+                String path = line.substring(0, tab);
+                if (!path.equals(previousPath))
+                {
+                    MutableCategory<T> target = resolver.ensurePath(path);
+                    List<T> buffer = buffers.get(target);
+                    if (buffer == null)
+                    {
+                        buffer = new ArrayList<T>();
+                        buffers.put(target, buffer);
+                    }
+                    previousPath = path;
+                    previousBuffer = buffer;
+                }
+                previousBuffer.add(
+                    elementParser.apply(line.substring(tab + 1)));
+                count++;
+                buffered++;
+                if (buffered >= bufferSize)
+                {
+                    flush(category, buffers);
+                    buffered = 0;
+                    previousPath = null;
+                    previousBuffer = null;
+                }
+            }
+            flush(category, buffers);
+        }
+        catch (IOException | RuntimeException e)
+        {
+            // Add the elements from the lines before the failing line, 
+            // so that the state after a failed import is well-defined
+            try
+            {
+                flush(category, buffers);
+            }
+            catch (RuntimeException flushException)
+            {
+                e.addSuppressed(flushException);
+            }
+            throw e;
+        }
+        finally
+        {
+            resolver.detach();
+        }
+        return count;
+    }
+    
+    /**
+     * Add the elements from the given buffers to their categories in a
+     * batch, and clear the buffers
+     * 
+     * @param category The root {@link MutableCategory}
+     * @param buffers The mapping from categories to their buffers
+     */
+    private void flush(MutableCategory<T> category, 
+        final Map<MutableCategory<T>, List<T>> buffers)
+    {
+        try
+        {
+            category.batch(new Consumer<MutableCategory<T>>()
+            {
+                @Override
+                public void accept(MutableCategory<T> c)
+                {
+                    for (Map.Entry<MutableCategory<T>, List<T>> entry : 
+                        buffers.entrySet())
+                    {
+                        entry.getKey().addElements(entry.getValue());
+                    }
+                }
+            });
+        }
+        finally
+        {
+            buffers.clear();
+        }
+    }
+}
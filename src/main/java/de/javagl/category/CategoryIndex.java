@@ -0,0 +1,256 @@
+/*
+ * www.javagl.de - Category
+ *
+ * Copyright (c) 2012-2017 Marco Hutter - http://www.javagl.de
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.javagl.category;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * An index that maps elements to the {@link Category} instances that
+ * contain them. Instances of this class may be created with 
+ * {@link Categories#createIndex(Category)}.<br>
+ * <br>
+ * The index is created for a whole {@link Category} hierarchy, and 
+ * attaches a {@link CategoryListener} to the root category, in order 
+ * to be updated incrementally when elements or children are added 
+ * or removed anywhere in the hierarchy. The {@link #detach()} method 
+ * may be used to remove this listener when the index is no longer 
+ * needed. The index stores how often each element is contained in 
+ * each category, so that it does not have to query the categories
+ * when elements are removed.<br>
+ * <br>
+ * This class is not thread-safe.
+ * 
+ * @param <T> The type of the elements in the {@link Category}
+ */
+public final class CategoryIndex<T>
+{
+    /**
+     * The root of the {@link Category} hierarchy that is indexed
+     */
+    private final Category<T> category;
+    
+    /**
+     * The mapping from elements to the categories that contain them, 
+     * and the number of occurrences of the element in each category. 
+     * The inner maps are based on identity, and not on the structural
+     * equality of the categories.
+     */
+    private final Map<T, Map<Category<T>, Integer>> index;
+    
+    /**
+     * The {@link CategoryListener} that updates the index
+     */
+    private final CategoryListener<T> indexingListener = 
+        new CategoryListener<T>()
+    {
+        @Override
+        public void elementsAdded(CategoryEvent<T> event)
+        {
+            Category<T> source = event.getCategory();
+            for (T element : event.getElementSequence())
+            {
+                add(element, source);
+            }
+        }
+
+        @Override
+        public void elementsRemoved(CategoryEvent<T> event)
+        {
+            Category<T> source = event.getCategory();
+            for (T element : event.getElementSequence())
+            {
+                remove(element, source);
+            }
+        }
+
+        @Override
+        public void childAdded(CategoryEvent<T> event)
+        {
+            for (Category<T> child : event.getChildren())
+            {
+                addRecursively(child);
+            }
+        }
+
+        @Override
+        public void childRemoved(CategoryEvent<T> event)
+        {
+            for (Category<T> child : event.getChildren())
+            {
+                removeRecursively(child);
+            }
+        }
+    };
+    
+    /**
+     * Creates a new index for the given {@link Category} hierarchy
+     * 
+     * @param category The root {@link Category}
+     */
+    CategoryIndex(Category<T> category)
+    {
+        this.category = Objects.requireNonNull(
+            category, "The category may not be null");
+        this.index = new HashMap<T, Map<Category<T>, Integer>>();
+        addRecursively(category);
+        category.addCategoryListener(indexingListener);
+    }
+    
+    /**
+     * Add all elements of the given {@link Category} and its children
+     * to this index
+     * 
+     * @param c The {@link Category}
+     */
+    private void addRecursively(Category<T> c)
+    {
+        for (T element : c.getElements())
+        {
+            add(element, c);
+        }
+        for (Category<T> child : c.getChildren())
+        {
+            addRecursively(child);
+        }
+    }
+    
+    /**
+     * Remove all elements of the given {@link Category} and its children
+     * from this index
+     * 
+     * @param c The {@link Category}
+     */
+    private void removeRecursively(Category<T> c)
+    {
+        for (T element : c.getElements())
+        {
+            remove(element, c);
+        }
+        for (Category<T> child : c.getChildren())
+        {
+            removeRecursively(child);
+        }
+    }
+    
+    /**
+     * Store the information that the given element is contained in
+     * the given {@link Category} once more
+     * 
+     * @param element The element
+     * @param c The {@link Category}
+     */
+    private void add(T element, Category<T> c)
+    {
+        Map<Category<T>, Integer> categories = index.get(element);
+        if (categories == null)
+        {
+            categories = new IdentityHashMap<Category<T>, Integer>(2);
+            index.put(element, categories);
+        }
+        Integer count = categories.get(c);
+        categories.put(c, count == null ? 1 : count + 1);
+    }
+    
+    /**
+     * Store the information that the given element is contained in
+     * the given {@link Category} once less, and remove the category 
+     * from the index for the element when it no longer contains it
+     * 
+     * @param element The element
+     * @param c The {@link Category}
+     */
+    private void remove(T element, Category<T> c)
+    {
+        Map<Category<T>, Integer> categories = index.get(element);
+        if (categories == null)
+        {
+            return;
+        }
+        Integer count = categories.get(c);
+        if (count == null)
+        {
+            return;
+        }
+        if (count > 1)
+        {
+            categories.put(c, count - 1);
+            return;
+        }
+        categories.remove(c);
+        if (categories.isEmpty())
+        {
+            index.remove(element);
+        }
+    }
+    
+    /**
+     * Returns an unmodifiable (possibly empty) list containing all 
+     * categories of the indexed hierarchy that contain the given element. 
+     * The order of the categories in this list is unspecified. 
+     * Changes in the hierarchy will not affect the returned list.
+     * 
+     * @param element The element
+     * @return The categories that contain the given element
+     */
+    public List<Category<T>> getCategories(Object element)
+    {
+        Map<Category<T>, Integer> categories = index.get(element);
+        if (categories == null)
+        {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(
+            new ArrayList<Category<T>>(categories.keySet()));
+    }
+    
+    /**
+     * Returns whether the given element is contained in any 
+     * category of the indexed hierarchy
+     * 
+     * @param element The element
+     * @return Whether the element is contained in the hierarchy
+     */
+    public boolean contains(Object element)
+    {
+        return index.containsKey(element);
+    }
+    
+    /**
+     * Detach this index from the {@link Category} hierarchy. After this
+     * method has been called, this index will no longer be updated.
+     */
+    public void detach()
+    {
+        category.removeCategoryListener(indexingListener);
+    }
+}
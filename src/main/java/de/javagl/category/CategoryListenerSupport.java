@@ -0,0 +1,523 @@
+/*
+ * www.javagl.de - Category
+ *
+ * Copyright (c) 2012-2017 Marco Hutter - http://www.javagl.de
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.javagl.category;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Package-private class that manages the {@link CategoryListener} 
+ * instances of a {@link Category}, and offers methods for firing
+ * {@link CategoryEvent}s to these listeners.<br>
+ * <br>
+ * Each listener is stored together with an optional 
+ * {@link CategoryEventFilter}. Before an event is created, it is 
+ * checked whether any listener of the category, or of one of its 
+ * ancestors, is interested in the event. Only then, the event is 
+ * created and passed to the listeners.
+ *  
+ * @param <T> The type of the elements in the {@link Category}
+ */
+final class CategoryListenerSupport<T>
+{
+    /**
+     * A node of a path, in a singly linked list of names, that describes
+     * the path from a category that a listener is attached to, to the 
+     * category where an event originated
+     */
+    static final class PathNode
+    {
+        /**
+         * The name of the category
+         */
+        final String name;
+        
+        /**
+         * The next node of the path
+         */
+        final PathNode next;
+        
+        /**
+         * Creates a new instance
+         * 
+         * @param name The name of the category
+         * @param next The next node of the path
+         */
+        PathNode(String name, PathNode next)
+        {
+            this.name = name;
+            this.next = next;
+        }
+    }
+    
+    /**
+     * A listener that was added to the category, together with its
+     * {@link CategoryEventFilter}
+     * 
+     * @param <T> The type of the elements in the {@link Category}
+     */
+    private static final class Subscription<T>
+    {
+        /**
+         * The listener
+         */
+        private final CategoryListener<T> listener;
+        
+        /**
+         * The optional filter
+         */
+        private final CategoryEventFilter filter;
+        
+        /**
+         * Creates a new instance
+         * 
+         * @param listener The listener
+         * @param filter The optional filter
+         */
+        Subscription(CategoryListener<T> listener, 
+            CategoryEventFilter filter)
+        {
+            this.listener = listener;
+            this.filter = filter;
+        }
+        
+        /**
+         * Returns whether the listener should receive the described event
+         * 
+         * @param type The type of the event
+         * @param depth The depth of the category where the event originated,
+         * relative to the category that the listener is attached to
+         * @param path The path to the category where the event originated
+         * @return Whether the listener should receive the event
+         */
+        boolean matches(CategoryEventType type, int depth, PathNode path)
+        {
+            return filter == null || filter.matches(type, depth, path);
+        }
+    }
+    
+    /**
+     * A {@link CategoryListener} that will forward all events from child
+     * categories to the listeners that are attached to the category.
+     * 
+     * @param <T> The type of the elements in the {@link Category}
+     */
+    private static final class ForwardingListener<T> 
+        implements CategoryListener<T>
+    {
+        /**
+         * The {@link CategoryListenerSupport} that the events are 
+         * forwarded to
+         */
+        private final CategoryListenerSupport<T> support;
+        
+        /**
+         * Creates a new instance
+         * 
+         * @param support The {@link CategoryListenerSupport} that the 
+         * events are forwarded to
+         */
+        ForwardingListener(CategoryListenerSupport<T> support)
+        {
+            this.support = support;
+        }
+        
+        @Override
+        public void elementsAdded(CategoryEvent<T> event)
+        {
+            forward(CategoryEventType.ELEMENTS_ADDED, event);
+        }
+
+        @Override
+        public void elementsRemoved(CategoryEvent<T> event)
+        {
+            forward(CategoryEventType.ELEMENTS_REMOVED, event);
+        }
+
+        @Override
+        public void childAdded(CategoryEvent<T> event)
+        {
+            forward(CategoryEventType.CHILD_ADDED, event);
+        }
+
+        @Override
+        public void childRemoved(CategoryEvent<T> event)
+        {
+            forward(CategoryEventType.CHILD_REMOVED, event);
+        }
+        
+        /**
+         * Forward the given event from a child. This is only called when
+         * the event was not dispatched by a {@link CategoryListenerSupport}, 
+         * so the event is assumed to originate from the child itself.
+         * 
+         * @param type The type of the event
+         * @param event The event
+         */
+        private void forward(CategoryEventType type, CategoryEvent<T> event)
+        {
+            PathNode path = new PathNode(event.getCategory().getName(), null);
+            support.dispatch(type, event, 1, path);
+        }
+    }
+    
+    /**
+     * The {@link Category} that is the source of the events
+     */
+    private final Category<T> category;
+    
+    /**
+     * The subscriptions of the listeners that are attached to the category
+     */
+    private final List<Subscription<T>> subscriptions;
+    
+    /**
+     * The {@link ForwardingListener} that forwards all events from child
+     * categories to the listeners that are attached to the category.
+     */
+    private final ForwardingListener<T> forwardingListener;
+    
+    /**
+     * Creates a new instance for the given {@link Category}
+     * 
+     * @param category The {@link Category}
+     */
+    CategoryListenerSupport(Category<T> category)
+    {
+        this.category = category;
+        this.subscriptions = new CopyOnWriteArrayList<Subscription<T>>();
+        this.forwardingListener = new ForwardingListener<T>(this);
+    }
+    
+    /**
+     * Returns the {@link CategoryListener} that has to be attached to
+     * each child of the category, in order to forward the events from 
+     * the child to the listeners of the category
+     * 
+     * @return The forwarding listener
+     */
+    CategoryListener<T> getForwardingListener()
+    {
+        return forwardingListener;
+    }
+    
+    /**
+     * Add the given {@link CategoryListener}
+     * 
+     * @param listener The {@link CategoryListener} to add
+     */
+    void addCategoryListener(CategoryListener<T> listener)
+    {
+        addCategoryListener(listener, null);
+    }
+
+    /**
+     * Add the given {@link CategoryListener}, which should only receive 
+     * the events that match the given {@link CategoryEventFilter}
+     * 
+     * @param listener The {@link CategoryListener} to add
+     * @param filter The optional {@link CategoryEventFilter}
+     */
+    void addCategoryListener(CategoryListener<T> listener, 
+        CategoryEventFilter filter)
+    {
+        subscriptions.add(new Subscription<T>(listener, filter));
+    }
+    
+    /**
+     * Remove the given {@link CategoryListener}
+     * 
+     * @param listener The {@link CategoryListener} to remove
+     */
+    void removeCategoryListener(CategoryListener<T> listener)
+    {
+        if (listener instanceof ForwardingListener<?>)
+        {
+            // The category is detached from its parent. Make sure that
+            // the parent still receives the events that are pending in
+            // the current batch
+            CategoryBatch batch = CategoryBatch.current();
+            if (batch != null)
+            {
+                batch.flush();
+            }
+        }
+        for (Subscription<T> subscription : subscriptions)
+        {
+            if (subscription.listener.equals(listener))
+            {
+                subscriptions.remove(subscription);
+                return;
+            }
+        }
+    }
+    
+    /**
+     * Returns whether any listener of the category, or of one of its 
+     * ancestors, should receive the described event
+     * 
+     * @param type The type of the event
+     * @param depth The depth of the category where the event originated,
+     * relative to the category
+     * @param path The path to the category where the event originated
+     * @return Whether any listener should receive the event
+     */
+    private boolean isInterested(
+        CategoryEventType type, int depth, PathNode path)
+    {
+        for (Subscription<T> subscription : subscriptions)
+        {
+            if (subscription.listener instanceof ForwardingListener<?>)
+            {
+                ForwardingListener<T> forwarding = 
+                    (ForwardingListener<T>) subscription.listener;
+                PathNode parentPath = new PathNode(category.getName(), path);
+                if (forwarding.support.isInterested(
+                    type, depth + 1, parentPath))
+                {
+                    return true;
+                }
+            }
+            else if (subscription.matches(type, depth, path))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Pass the given event to all listeners of the category, or of one
+     * of its ancestors, that should receive it
+     * 
+     * @param type The type of the event
+     * @param event The event
+     * @param depth The depth of the category where the event originated,
+     * relative to the category
+     * @param path The path to the category where the event originated
+     */
+    private void dispatch(CategoryEventType type, CategoryEvent<T> event,
+        int depth, PathNode path)
+    {
+        for (Subscription<T> subscription : subscriptions)
+        {
+            if (subscription.listener instanceof ForwardingListener<?>)
+            {
+                ForwardingListener<T> forwarding = 
+                    (ForwardingListener<T>) subscription.listener;
+                PathNode parentPath = new PathNode(category.getName(), path);
+                forwarding.support.dispatch(
+                    type, event, depth + 1, parentPath);
+            }
+            else if (subscription.matches(type, depth, path))
+            {
+                deliver(subscription.listener, type, event);
+            }
+        }
+    }
+    
+    /**
+     * Pass the given event to the given listener
+     * 
+     * @param <T> The type of the elements in the {@link Category}
+     * 
+     * @param listener The listener
+     * @param type The type of the event
+     * @param event The event
+     */
+    private static <T> void deliver(CategoryListener<T> listener, 
+        CategoryEventType type, CategoryEvent<T> event)
+    {
+        switch (type)
+        {
+            case ELEMENTS_ADDED:
+                listener.elementsAdded(event);
+                break;
+                
+            case ELEMENTS_REMOVED:
+                listener.elementsRemoved(event);
+                break;
+                
+            case CHILD_ADDED:
+                listener.childAdded(event);
+                break;
+                
+            case CHILD_REMOVED:
+                listener.childRemoved(event);
+                break;
+                
+            default:
+                break;
+        }
+    }
+    
+    /**
+     * Returns whether any listener of the category, or of one of its 
+     * ancestors, should receive an event of the given type that 
+     * originates in the category. If this is not the case, then the 
+     * caller does not have to collect the data for the event.
+     * 
+     * @param type The type of the event
+     * @return Whether the event would be received by any listener
+     */
+    boolean isObserved(CategoryEventType type)
+    {
+        return !subscriptions.isEmpty() && isInterested(type, 0, null);
+    }
+    
+    /**
+     * Fire an event of the given type, for the given elements or children,
+     * if any listener should receive it. If a {@link CategoryBatch} is 
+     * currently active, the event will be recorded in the batch instead.
+     * 
+     * @param type The type of the event
+     * @param elements The elements that have been added or removed
+     * @param children The children that have been added or removed
+     * @param copyElements Whether the elements have to be copied when
+     * the event is created, because they are not owned by the category
+     */
+    private void fire(CategoryEventType type, 
+        Iterable<? extends T> elements, List<? extends Category<T>> children,
+        boolean copyElements)
+    {
+        if (!isObserved(type))
+        {
+            return;
+        }
+        CategoryBatch batch = CategoryBatch.current();
+        if (batch != null)
+        {
+            if (elements != null)
+            {
+                batch.record(this, type, elements);
+            }
+            else
+            {
+                batch.record(this, type, children);
+            }
+            return;
+        }
+        CategoryEvent<T> categoryEvent = 
+            new CategoryEvent<T>(category, elements, children, copyElements);
+        dispatch(type, categoryEvent, 0, null);
+    }
+    
+    /**
+     * Notify each registered {@link CategoryListener} that the 
+     * given child was added
+     * 
+     * @param child The child that was added
+     */
+    void fireChildAdded(Category<T> child)
+    {
+        fireChildrenAdded(Collections.singletonList(child));
+    }
+    
+    /**
+     * Notify each registered {@link CategoryListener} that the 
+     * given children have been added, with a single event
+     * 
+     * @param addedChildren The children that have been added
+     */
+    void fireChildrenAdded(List<? extends Category<T>> addedChildren)
+    {
+        fire(CategoryEventType.CHILD_ADDED, null, addedChildren, true);
+    }
+
+    /**
+     * Notify each registered {@link CategoryListener} that the 
+     * given child was removed
+     * 
+     * @param child The child that was removed
+     */
+    void fireChildRemoved(Category<T> child)
+    {
+        fireChildrenRemoved(Collections.singletonList(child));
+    }
+    
+    /**
+     * Notify each registered {@link CategoryListener} that the 
+     * given children have been removed, with a single event
+     * 
+     * @param removedChildren The children that have been removed
+     */
+    void fireChildrenRemoved(List<? extends Category<T>> removedChildren)
+    {
+        fire(CategoryEventType.CHILD_REMOVED, null, removedChildren, true);
+    }
+
+    /**
+     * Notify each registered {@link CategoryListener} that the 
+     * given elements have been added. The elements will be copied
+     * when the event is created.
+     * 
+     * @param elements The element that have been added
+     */
+    void fireElementsAdded(Iterable<? extends T> elements)
+    {
+        fire(CategoryEventType.ELEMENTS_ADDED, elements, null, true);
+    }
+
+    /**
+     * Notify each registered {@link CategoryListener} that the 
+     * given elements have been added. The given sequence must be 
+     * owned by the category, and may not be modified afterwards. 
+     * It will only be copied when a listener requests the elements.
+     * 
+     * @param elements The element that have been added
+     */
+    void fireOwnedElementsAdded(Iterable<? extends T> elements)
+    {
+        fire(CategoryEventType.ELEMENTS_ADDED, elements, null, false);
+    }
+
+    /**
+     * Notify each registered {@link CategoryListener} that the 
+     * given elements have been removed. The elements will be copied
+     * when the event is created.
+     * 
+     * @param elements The elements that have been removed
+     */
+    void fireElementsRemoved(Iterable<? extends T> elements)
+    {
+        fire(CategoryEventType.ELEMENTS_REMOVED, elements, null, true);
+    }
+    
+    /**
+     * Notify each registered {@link CategoryListener} that the 
+     * given elements have been removed. The given sequence must be 
+     * owned by the category, and may not be modified afterwards. 
+     * It will only be copied when a listener requests the elements.
+     * 
+     * @param elements The elements that have been removed
+     */
+    void fireOwnedElementsRemoved(Iterable<? extends T> elements)
+    {
+        fire(CategoryEventType.ELEMENTS_REMOVED, elements, null, false);
+    }
+}
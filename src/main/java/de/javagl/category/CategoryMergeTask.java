@@ -0,0 +1,336 @@
+/*
+ * www.javagl.de - Category
+ *
+ * Copyright (c) 2012-2017 Marco Hutter - http://www.javagl.de
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.javagl.category;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+
+/**
+ * Package-private task for merging a {@link Category} hierarchy into a
+ * {@link MutableCategory} hierarchy. See 
+ * {@link Categories#mergeRecursively(MutableCategory, Category, 
+ * MergeMode, ForkJoinPool)}.<br>
+ * <br>
+ * The merge is performed in two phases. In the first phase, a plan is
+ * computed in parallel. It contains the elements that have to be 
+ * added to each existing target category. For source categories that 
+ * do not have a corresponding target category, and whose parent is a 
+ * {@link DefaultCategory}, detached copies are created in this phase 
+ * as well. In the second phase, the plan is applied sequentially, 
+ * during a batch, and the detached copies are attached to their 
+ * parents.
+ * 
+ * @param <T> The type of the elements in the {@link Category}
+ */
+final class CategoryMergeTask<T> 
+    extends RecursiveTask<CategoryMergeTask.Plan<T>>
+{
+    /**
+     * Serial UID
+     */
+    private static final long serialVersionUID = -4207339071557235874L;
+
+    /**
+     * The plan for merging one source category
+     * 
+     * @param <T> The type of the elements in the {@link Category}
+     */
+    static final class Plan<T>
+    {
+        /**
+         * The name of the category
+         */
+        private final String name;
+        
+        /**
+         * The existing target category, or <code>null</code> if the
+         * target category has to be created
+         */
+        private final MutableCategory<T> target;
+        
+        /**
+         * The detached copy of the source category that has to be 
+         * attached to the parent target category, or <code>null</code> 
+         * if no detached copy was created
+         */
+        private DefaultCategory<T> detached;
+        
+        /**
+         * The elements that have to be added to the target category
+         */
+        private List<? extends T> elements;
+        
+        /**
+         * The plans for the children
+         */
+        private List<Plan<T>> children;
+        
+        /**
+         * Creates a new plan
+         * 
+         * @param name The name of the category
+         * @param target The existing target category, or 
+         * <code>null</code> if the target category has to be created
+         */
+        Plan(String name, MutableCategory<T> target)
+        {
+            this.name = name;
+            this.target = target;
+            this.elements = Collections.emptyList();
+            this.children = Collections.emptyList();
+        }
+    }
+    
+    /**
+     * Merge the given source {@link Category} into the given target
+     * {@link MutableCategory}, using the given pool for computing
+     * the merge plan
+     * 
+     * @param <T> The type of the elements in the {@link Category}
+     * 
+     * @param target The target category
+     * @param source The source category
+     * @param mode The {@link MergeMode}
+     * @param pool The pool
+     */
+    static <T> void merge(MutableCategory<T> target, 
+        Category<? extends T> source, MergeMode mode, ForkJoinPool pool)
+    {
+        final Plan<T> plan = pool.invoke(
+            new CategoryMergeTask<T>(target, null, source, mode));
+        target.batch(new Consumer<MutableCategory<T>>()
+        {
+            @Override
+            public void accept(MutableCategory<T> t)
+            {
+                apply(t, plan);
+            }
+        });
+    }
+    
+    /**
+     * Apply the given plan to the given target category
+     * 
+     * @param <T> The type of the elements in the {@link Category}
+     * 
+     * @param target The target category
+     * @param plan The plan
+     */
+    private static <T> void apply(MutableCategory<T> target, Plan<T> plan)
+    {
+        if (!plan.elements.isEmpty())
+        {
+            target.addElements(plan.elements);
+        }
+        for (Plan<T> childPlan : plan.children)
+        {
+            if (childPlan.detached != null)
+            {
+                DefaultCategory<T> defaultTarget = 
+                    (DefaultCategory<T>) target;
+                defaultTarget.adoptChild(childPlan.detached);
+            }
+            else
+            {
+                MutableCategory<T> childTarget = childPlan.target;
+                if (childTarget == null)
+                {
+                    childTarget = target.addChild(childPlan.name);
+                }
+                apply(childTarget, childPlan);
+            }
+        }
+    }
+    
+    /**
+     * The existing target category, or <code>null</code> if the target 
+     * category does not exist yet
+     */
+    private final MutableCategory<T> target;
+    
+    /**
+     * The {@link DefaultCategory} that should create the detached copy
+     * of the source category, or <code>null</code> if no detached copy
+     * should be created
+     */
+    private final DefaultCategory<T> detachedParent;
+    
+    /**
+     * The source category
+     */
+    private final Category<? extends T> source;
+    
+    /**
+     * The {@link MergeMode}
+     */
+    private final MergeMode mode;
+    
+    /**
+     * Creates a new task
+     * 
+     * @param target The existing target category, or <code>null</code> 
+     * if the target category does not exist yet
+     * @param detachedParent The {@link DefaultCategory} that should 
+     * create the detached copy of the source category, or 
+     * <code>null</code> if no detached copy should be created
+     * @param source The source category
+     * @param mode The {@link MergeMode}
+     */
+    private CategoryMergeTask(MutableCategory<T> target, 
+        DefaultCategory<T> detachedParent, Category<? extends T> source, 
+        MergeMode mode)
+    {
+        this.target = target;
+        this.detachedParent = detachedParent;
+        this.source = source;
+        this.mode = mode;
+    }
+    
+    @Override
+    protected Plan<T> compute()
+    {
+        Plan<T> plan = new Plan<T>(source.getName(), target);
+        plan.elements = selectElements();
+        if (target == null && detachedParent != null)
+        {
+            DefaultCategory<T> detached = 
+                detachedParent.createChild(source.getName());
+            detached.addElements(plan.elements);
+            plan.elements = Collections.emptyList();
+            plan.detached = detached;
+            for (Plan<T> childPlan : computeChildren(null, detached))
+            {
+                detached.addChild(childPlan.detached);
+            }
+            return plan;
+        }
+        DefaultCategory<T> childDetachedParent = null;
+        if (target instanceof DefaultCategory<?>)
+        {
+            childDetachedParent = (DefaultCategory<T>) target;
+        }
+        plan.children = computeChildren(target, childDetachedParent);
+        return plan;
+    }
+    
+    /**
+     * Compute the plans for the children of the source category
+     * 
+     * @param parentTarget The existing target category, or 
+     * <code>null</code> if the target category does not exist yet
+     * @param childDetachedParent The {@link DefaultCategory} that should 
+     * create the detached copies for source children that do not have 
+     * a corresponding target category, or <code>null</code> if no 
+     * detached copies should be created
+     * @return The plans
+     */
+    private List<Plan<T>> computeChildren(MutableCategory<T> parentTarget,
+        DefaultCategory<T> childDetachedParent)
+    {
+        List<? extends Category<? extends T>> sourceChildren = 
+            source.getChildren();
+        int n = sourceChildren.size();
+        if (n == 0)
+        {
+            return Collections.emptyList();
+        }
+        
+        // Fork the tasks for the children with a large subtree, as long
+        // as there are not enough tasks queued for the other workers, 
+        // and compute the remaining ones directly
+        List<CategoryMergeTask<T>> tasks = 
+            new ArrayList<CategoryMergeTask<T>>(n);
+        List<Plan<T>> plans = new ArrayList<Plan<T>>(n);
+        for (Category<? extends T> sourceChild : sourceChildren)
+        {
+            MutableCategory<T> childTarget = null;
+            if (parentTarget != null)
+            {
+                childTarget = parentTarget.getChild(sourceChild.getName());
+            }
+            CategoryMergeTask<T> task = new CategoryMergeTask<T>(
+                childTarget, childDetachedParent, sourceChild, mode);
+            if (CategoryReduceTask.isWorthForking(sourceChild) && 
+                getSurplusQueuedTaskCount() <= 
+                CategoryReduceTask.SURPLUS_THRESHOLD)
+            {
+                task.fork();
+                tasks.add(task);
+                plans.add(null);
+            }
+            else
+            {
+                tasks.add(null);
+                plans.add(task.compute());
+            }
+        }
+        for (int i = n - 1; i >= 0; i--)
+        {
+            CategoryMergeTask<T> task = tasks.get(i);
+            if (task != null)
+            {
+                plans.set(i, task.join());
+            }
+        }
+        return plans;
+    }
+    
+    /**
+     * Returns the elements of the source category that have to be added 
+     * to the target category, depending on the {@link MergeMode}
+     * 
+     * @return The elements
+     */
+    private List<? extends T> selectElements()
+    {
+        List<? extends T> sourceElements = source.getElements();
+        if (mode == MergeMode.APPEND || sourceElements.isEmpty())
+        {
+            return sourceElements;
+        }
+        Set<Object> present = new HashSet<Object>();
+        if (target != null)
+        {
+            present.addAll(target.getElements());
+        }
+        List<T> result = new ArrayList<T>();
+        for (T element : sourceElements)
+        {
+            if (present.add(element))
+            {
+                result.add(element);
+            }
+        }
+        return result;
+    }
+}
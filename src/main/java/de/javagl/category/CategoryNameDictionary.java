@@ -0,0 +1,105 @@
+/*
+ * www.javagl.de - Category
+ *
+ * Copyright (c) 2012-2017 Marco Hutter - http://www.javagl.de
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.javagl.category;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A dictionary that maps names to canonical string instances. Instances 
+ * of this class may be created with 
+ * {@link Categories#createNameDictionary()}.<br>
+ * <br>
+ * A dictionary may be passed to {@link Categories#create(String, 
+ * CategoryNameDictionary)} or {@link Categories#createBuilder(String, 
+ * CategoryNameDictionary)}. The names of the created category and all 
+ * its descendants will then be replaced by their canonical instances,
+ * so that names that appear many times in a hierarchy are stored 
+ * only once. The same dictionary may be shared by multiple 
+ * hierarchies.<br>
+ * <br>
+ * Looking up children with a canonical name is cheaper, because the 
+ * names can be compared by identity.<br>
+ * <br>
+ * This class is thread-safe.
+ */
+public final class CategoryNameDictionary
+{
+    /**
+     * The mapping from names to their canonical instances
+     */
+    private final ConcurrentMap<String, String> names;
+    
+    /**
+     * Creates a new, empty dictionary
+     */
+    CategoryNameDictionary()
+    {
+        this.names = new ConcurrentHashMap<String, String>();
+    }
+    
+    /**
+     * Returns the canonical instance of the given name. If there is no 
+     * canonical instance yet, then the given name will become the 
+     * canonical instance.
+     * 
+     * @param name The name
+     * @return The canonical instance
+     */
+    public String intern(String name)
+    {
+        Objects.requireNonNull(name, "The name may not be null");
+        String canonical = names.get(name);
+        if (canonical != null)
+        {
+            return canonical;
+        }
+        canonical = names.putIfAbsent(name, name);
+        if (canonical != null)
+        {
+            return canonical;
+        }
+        return name;
+    }
+    
+    /**
+     * Returns the number of distinct names in this dictionary
+     * 
+     * @return The number of names
+     */
+    public int size()
+    {
+        return names.size();
+    }
+    
+    @Override
+    public String toString()
+    {
+        return "CategoryNameDictionary[size=" + size() + "]";
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * www.javagl.de - Category
+ *
+ * Copyright (c) 2012-2017 Marco Hutter - http://www.javagl.de
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.javagl.category;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A class for resolving paths in a {@link MutableCategory} hierarchy,
+ * caching the results. Instances of this class may be created with 
+ * {@link Categories#createPathResolver(MutableCategory)}. See 
+ * {@link Categories#resolve(Category, String)} for details about the 
+ * format of the paths.<br>
+ * <br>
+ * The resolver attaches a {@link CategoryListener} to the root category,
+ * in order to discard the cached results when a child is removed 
+ * anywhere in the hierarchy. The {@link #detach()} method may be used 
+ * to remove this listener when the resolver is no longer needed. 
+ * Since the events are deferred while a 
+ * {@link MutableCategory#batch(java.util.function.Consumer) batch} 
+ * is active, the cache is bypassed during a batch, so that categories
+ * that have been removed in the batch are never returned.<br>
+ * <br>
+ * This class is not thread-safe.
+ * 
+ * @param <T> The type of the elements in the {@link Category}
+ */
+public final class CategoryPathResolver<T>
+{
+    /**
+     * The root of the {@link Category} hierarchy
+     */
+    private final MutableCategory<T> category;
+    
+    /**
+     * The mapping from paths to the categories at these paths
+     */
+    private final Map<String, MutableCategory<T>> cache;
+    
+    /**
+     * The {@link CategoryListener} that clears the cache when a child
+     * is removed
+     */
+    private final CategoryListener<T> invalidatingListener = 
+        new CategoryListener<T>()
+    {
+        @Override
+        public void elementsAdded(CategoryEvent<T> event)
+        {
+            // Not relevant for the paths, and filtered out
+        }
+
+        @Override
+        public void elementsRemoved(CategoryEvent<T> event)
+        {
+            // Not relevant for the paths, and filtered out
+        }
+
+        @Override
+        public void childAdded(CategoryEvent<T> event)
+        {
+            // Only existing categories are cached, so adding a 
+            // child does not invalidate any cached path. These
+            // events are filtered out
+        }
+
+        @Override
+        public void childRemoved(CategoryEvent<T> event)
+        {
+            cache.clear();
+        }
+    };
+    
+    /**
+     * Creates a new resolver for the given {@link MutableCategory} 
+     * hierarchy
+     * 
+     * @param category The root {@link MutableCategory}
+     */
+    CategoryPathResolver(MutableCategory<T> category)
+    {
+        this.category = Objects.requireNonNull(
+            category, "The category may not be null");
+        this.cache = new HashMap<String, MutableCategory<T>>();
+        category.addCategoryListener(invalidatingListener, 
+            CategoryEventFilter.all().withTypes(
+                CategoryEventType.CHILD_REMOVED));
+    }
+    
+    /**
+     * Returns the descendant of the root category that is reached by 
+     * following the given path. 
+     * 
+     * @param path The path
+     * @return The {@link MutableCategory} at the given path, or 
+     * <code>null</code> if there is no category at the given path
+     * @throws IllegalArgumentException If the path contains an empty name
+     */
+    public MutableCategory<T> resolve(String path)
+    {
+        if (CategoryBatch.current() != null)
+        {
+            return Categories.resolve(category, path);
+        }
+        MutableCategory<T> result = cache.get(path);
+        if (result == null)
+        {
+            result = Categories.resolve(category, path);
+            if (result != null)
+            {
+                cache.put(path, result);
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Returns the descendant of the root category that is reached by 
+     * following the given path, creating all categories along the path 
+     * that do not exist yet. 
+     * 
+     * @param path The path
+     * @return The {@link MutableCategory} at the given path
+     * @throws IllegalArgumentException If the path contains an empty name
+     * @see Categories#ensurePath(MutableCategory, String)
+     */
+    public MutableCategory<T> ensurePath(String path)
+    {
+        if (CategoryBatch.current() != null)
+        {
+            return Categories.ensurePath(category, path);
+        }
+        MutableCategory<T> result = cache.get(path);
+        if (result == null)
+        {
+            result = Categories.ensurePath(category, path);
+            cache.put(path, result);
+        }
+        return result;
+    }
+    
+    /**
+     * Detach this resolver from the {@link Category} hierarchy. After 
+     * this method has been called, the cached results will no longer
+     * be discarded when the hierarchy changes.
+     */
+    public void detach()
+    {
+        category.removeCategoryListener(invalidatingListener);
+    }
+}
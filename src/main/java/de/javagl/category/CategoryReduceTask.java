@@ -0,0 +1,166 @@
+/*
+ * www.javagl.de - Category
+ *
+ * Copyright (c) 2012-2017 Marco Hutter - http://www.javagl.de
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.javagl.category;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+
+/**
+ * Package-private task for reducing a {@link Category} hierarchy in
+ * parallel. See 
+ * {@link Categories#parallelReduce(Category, Function, BinaryOperator)}.
+ * 
+ * @param <T> The type of the elements in the {@link Category}
+ * @param <R> The type of the result
+ */
+final class CategoryReduceTask<T, R> extends RecursiveTask<R>
+{
+    /**
+     * Serial UID
+     */
+    private static final long serialVersionUID = 7310449431235425092L;
+
+    /**
+     * The number of surplus tasks that may be queued in the current
+     * worker thread, before the tasks for children are no longer 
+     * forked, but computed directly. This is also used by the
+     * {@link CategoryMergeTask}.
+     */
+    static final int SURPLUS_THRESHOLD = 3;
+    
+    /**
+     * The number of elements above which the task for a child that 
+     * does not have children will be forked
+     */
+    private static final int ELEMENTS_THRESHOLD = 1024;
+    
+    /**
+     * The {@link Category} for which this task computes the result
+     */
+    private final Category<T> category;
+    
+    /**
+     * The function that computes the result for a single category
+     */
+    private final Function<? super Category<T>, ? extends R> mapper;
+    
+    /**
+     * The function that combines two results
+     */
+    private final BinaryOperator<R> combiner;
+    
+    /**
+     * Creates a new task
+     * 
+     * @param category The {@link Category}
+     * @param mapper The function that computes the result for a single
+     * category
+     * @param combiner The function that combines two results
+     */
+    CategoryReduceTask(Category<T> category, 
+        Function<? super Category<T>, ? extends R> mapper, 
+        BinaryOperator<R> combiner)
+    {
+        this.category = Objects.requireNonNull(
+            category, "The category may not be null");
+        this.mapper = Objects.requireNonNull(
+            mapper, "The mapper may not be null");
+        this.combiner = Objects.requireNonNull(
+            combiner, "The combiner may not be null");
+    }
+    
+    @Override
+    protected R compute()
+    {
+        R result = mapper.apply(category);
+        List<? extends Category<T>> children = category.getChildren();
+        if (children.isEmpty())
+        {
+            return result;
+        }
+        
+        // Fork the tasks for the children that are worth forking, as 
+        // long as there are not enough tasks queued for the other 
+        // workers, and compute the remaining ones directly
+        int n = children.size();
+        List<CategoryReduceTask<T, R>> tasks = 
+            new ArrayList<CategoryReduceTask<T, R>>(n);
+        List<R> results = new ArrayList<R>(n);
+        for (Category<T> child : children)
+        {
+            CategoryReduceTask<T, R> task = 
+                new CategoryReduceTask<T, R>(child, mapper, combiner);
+            if (isWorthForking(child) && 
+                getSurplusQueuedTaskCount() <= SURPLUS_THRESHOLD)
+            {
+                task.fork();
+                tasks.add(task);
+                results.add(null);
+            }
+            else
+            {
+                tasks.add(null);
+                results.add(task.compute());
+            }
+        }
+        for (int i = n - 1; i >= 0; i--)
+        {
+            CategoryReduceTask<T, R> task = tasks.get(i);
+            if (task != null)
+            {
+                results.set(i, task.join());
+            }
+        }
+        for (R childResult : results)
+        {
+            result = combiner.apply(result, childResult);
+        }
+        return result;
+    }
+    
+    /**
+     * Returns whether it is worth forking the task for the given child 
+     * category. This is a cheap estimate: The task is forked when the 
+     * child has children of its own, or more elements than the 
+     * {@link #ELEMENTS_THRESHOLD}. The actual size of the subtree is
+     * not computed, because this would require a traversal of the
+     * subtree. The elements are counted without copying them. This
+     * is also used by the {@link CategoryMergeTask}.
+     * 
+     * @param child The child category
+     * @return Whether the task should be forked
+     */
+    static boolean isWorthForking(Category<?> child)
+    {
+        return !child.getChildren().isEmpty() ||
+            Categories.getElementCount(child) > ELEMENTS_THRESHOLD;
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ * www.javagl.de - Category
+ *
+ * Copyright (c) 2012-2017 Marco Hutter - http://www.javagl.de
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.javagl.category;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * A class for writing a formatted, multi-line representation of a
+ * {@link Category} hierarchy to an <code>Appendable</code>, for example,
+ * a <code>Writer</code> or a <code>StringBuilder</code>. Instances of 
+ * this class may be created with {@link Categories#createRenderer()}.
+ * <br>
+ * <br>
+ * The output is written directly, in time that is linear in the size
+ * of the output. The depth of the hierarchy and the number of elements
+ * that are written for each category may be limited, so that large 
+ * hierarchies can be written to logs safely. Omitted children and
+ * elements are summarized in a single line.<br>
+ * <br>
+ * <b>The exact format of the output is unspecified!</b><br>
+ * <br>
+ * This class is not thread-safe.
+ */
+public final class CategoryRenderer
+{
+    /**
+     * The maximum depth of the categories that are written
+     */
+    private int maxDepth;
+    
+    /**
+     * The maximum number of elements that are written for each category
+     */
+    private int maxElements;
+    
+    /**
+     * The function that creates the string representations of elements
+     */
+    private Function<Object, String> elementFormatter;
+    
+    /**
+     * Creates a new instance, without limits for the depth and the 
+     * number of elements, that formats elements with 
+     * <code>String.valueOf</code>
+     */
+    CategoryRenderer()
+    {
+        this.maxDepth = Integer.MAX_VALUE;
+        this.maxElements = Integer.MAX_VALUE;
+        this.elementFormatter = new Function<Object, String>()
+        {
+            @Override
+            public String apply(Object element)
+            {
+                return String.valueOf(element);
+            }
+        };
+    }
+    
+    /**
+     * Set the maximum depth of the categories that are written. The 
+     * root category has the depth 0. The children of categories with 
+     * the maximum depth will be omitted.
+     * 
+     * @param maxDepth The maximum depth
+     * @return This renderer
+     * @throws IllegalArgumentException If the maximum depth is negative
+     */
+    public CategoryRenderer setMaxDepth(int maxDepth)
+    {
+        if (maxDepth < 0)
+        {
+            throw new IllegalArgumentException(
+                "The maximum depth may not be negative, but is " + maxDepth);
+        }
+        this.maxDepth = maxDepth;
+        return this;
+    }
+    
+    /**
+     * Set the maximum number of elements that are written for each
+     * category. Further elements will be omitted.
+     * 
+     * @param maxElements The maximum number of elements
+     * @return This renderer
+     * @throws IllegalArgumentException If the maximum number is negative
+     */
+    public CategoryRenderer setMaxElements(int maxElements)
+    {
+        if (maxElements < 0)
+        {
+            throw new IllegalArgumentException(
+                "The maximum number of elements may not be negative, " + 
+                "but is " + maxElements);
+        }
+        this.maxElements = maxElements;
+        return this;
+    }
+    
+    /**
+     * Set the function that creates the string representations of the
+     * elements. The function may receive <code>null</code> elements.
+     * 
+     * @param elementFormatter The element formatter
+     * @return This renderer
+     */
+    public CategoryRenderer setElementFormatter(
+        Function<Object, String> elementFormatter)
+    {
+        this.elementFormatter = Objects.requireNonNull(elementFormatter, 
+            "The elementFormatter may not be null");
+        return this;
+    }
+    
+    /**
+     * Write the representation of the given {@link Category} to the 
+     * given <code>Appendable</code>
+     * 
+     * @param category The {@link Category}
+     * @param appendable The <code>Appendable</code>
+     * @throws IOException If the <code>Appendable</code> throws an 
+     * IOException
+     */
+    public void render(Category<?> category, Appendable appendable) 
+        throws IOException
+    {
+        Objects.requireNonNull(appendable, "The appendable may not be null");
+        if (category == null)
+        {
+            appendable.append("null");
+            return;
+        }
+        render(category, 0, new StringBuilder(), appendable);
+    }
+    
+    /**
+     * Returns the representation of the given {@link Category} as
+     * a string
+     * 
+     * @param category The {@link Category}
+     * @return The string
+     */
+    public String render(Category<?> category)
+    {
+        StringBuilder sb = new StringBuilder();
+        try
+        {
+            render(category, sb);
+        }
+        catch (IOException e)
+        {
+            // A StringBuilder does not throw IOExceptions
+            throw new AssertionError(e);
+        }
+        return sb.toString();
+    }
+    
+    /**
+     * Recursive method for writing the representation of a category.
+     * The given indentation will be extended for the children, and 
+     * reset to its original length before this method returns.
+     * 
+     * @param category The {@link Category}
+     * @param depth The depth of the category
+     * @param indent The indentation
+     * @param appendable The <code>Appendable</code>
+     * @throws IOException If the <code>Appendable</code> throws an 
+     * IOException
+     */
+    private void render(Category<?> category, int depth, 
+        StringBuilder indent, Appendable appendable) throws IOException
+    {
+        int length = indent.length();
+        if (length >= 2)
+        {
+            appendable.append(indent, 0, length - 2).append("+-");
+        }
+        appendable.append(category.getName()).append('\n');
+        
+        List<?> elements = category.getElements();
+        int numElements = Math.min(elements.size(), maxElements);
+        for (int i = 0; i < numElements; i++)
+        {
+            appendable.append(indent).append("|-");
+            appendable.append(elementFormatter.apply(elements.get(i)));
+            appendable.append('\n');
+        }
+        if (numElements < elements.size())
+        {
+            appendable.append(indent).append("|-... (");
+            appendable.append(String.valueOf(elements.size() - numElements));
+            appendable.append(" more elements)\n");
+        }
+        
+        List<? extends Category<?>> children = category.getChildren();
+        int numChildren = children.size();
+        if (numChildren == 0)
+        {
+            return;
+        }
+        if (depth >= maxDepth)
+        {
+            appendable.append(indent).append("+-... (");
+            appendable.append(String.valueOf(numChildren));
+            appendable.append(" children)\n");
+            return;
+        }
+        for (int i = 0; i < numChildren; i++)
+        {
+            indent.append(i == numChildren - 1 ? "  " : "| ");
+            render(children.get(i), depth + 1, indent, appendable);
+            indent.setLength(length);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * www.javagl.de - Category
+ *
+ * Copyright (c) 2012-2017 Marco Hutter - http://www.javagl.de
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.javagl.category;
+
+import java.util.List;
+
+/**
+ * Implementation of a {@link Category} that is a lightweight view on
+ * one category of a {@link CompactCategoryTree}. Instances of this 
+ * class are created with {@link Categories#compact(Category)}.<br>
+ * <br>
+ * The categories never change, and may therefore be shared among 
+ * threads without synchronization. Listeners that are added to such 
+ * a category will never be notified.
+ * 
+ * @param <T> The type of the elements in this {@link Category}
+ */
+final class CompactCategory<T> implements Category<T>
+{
+    /**
+     * The tree that this category belongs to
+     */
+    private final CompactCategoryTree<T> tree;
+    
+    /**
+     * The index of this category in the tree
+     */
+    private final int index;
+    
+    /**
+     * Creates a new instance
+     * 
+     * @param tree The tree that this category belongs to
+     * @param index The index of this category in the tree
+     */
+    CompactCategory(CompactCategoryTree<T> tree, int index)
+    {
+        this.tree = tree;
+        this.index = index;
+    }
+    
+    /**
+     * Returns whether this is the root of its tree
+     * 
+     * @return Whether this is the root
+     */
+    boolean isRoot()
+    {
+        return index == 0;
+    }
+    
+    @Override
+    public String getName()
+    {
+        return tree.getName(index);
+    }
+
+    @Override
+    public List<CompactCategory<T>> getChildren()
+    {
+        return tree.getChildren(index);
+    }
+
+    @Override
+    public CompactCategory<T> getChild(String name)
+    {
+        return tree.getChild(index, name);
+    }
+
+    @Override
+    public List<T> getElements()
+    {
+        return tree.getElements(index);
+    }
+
+    @Override
+    public boolean containsElement(Object element)
+    {
+        return tree.containsElement(index, element);
+    }
+
+    @Override
+    public void addCategoryListener(CategoryListener<T> listener)
+    {
+        // The category never changes, so the listener is never notified
+    }
+
+    @Override
+    public void addCategoryListener(
+        CategoryListener<T> listener, CategoryEventFilter filter)
+    {
+        // The category never changes, so the listener is never notified
+    }
+
+    @Override
+    public void removeCategoryListener(CategoryListener<T> listener)
+    {
+        // The category never changes, so the listener is never notified
+    }
+
+    @Override
+    public String toString()
+    {
+        return getName();
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return tree.getHashCode(index);
+    }
+
+    @Override
+    public boolean equals(Object object)
+    {
+        if (object instanceof CompactCategory<?>)
+        {
+            CompactCategory<?> other = (CompactCategory<?>) object;
+            if (other.tree == tree && other.index == index)
+            {
+                return true;
+            }
+        }
+        return CategoryEquality.equals(this, object);
+    }
+}
@@ -0,0 +1,405 @@
+/*
+ * www.javagl.de - Category
+ *
+ * Copyright (c) 2012-2017 Marco Hutter - http://www.javagl.de
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.javagl.category;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * Package-private class storing a {@link Category} hierarchy in flat
+ * arrays. The categories are numbered in breadth-first order, so that
+ * the children of each category have consecutive indices. The root 
+ * has the index 0.<br>
+ * <br>
+ * The categories of the hierarchy are represented by lightweight
+ * {@link CompactCategory} views that only store the tree and the
+ * index of the category.
+ * 
+ * @param <T> The type of the elements in the {@link Category}
+ */
+final class CompactCategoryTree<T>
+{
+    /**
+     * Creates a new tree from the given {@link Category} hierarchy
+     * 
+     * @param <T> The type of the elements in the {@link Category}
+     * 
+     * @param root The root {@link Category}
+     * @return The tree
+     */
+    static <T> CompactCategoryTree<T> create(Category<T> root)
+    {
+        List<Category<T>> categories = new ArrayList<Category<T>>();
+        categories.add(root);
+        int numElements = 0;
+        for (int i = 0; i < categories.size(); i++)
+        {
+            Category<T> category = categories.get(i);
+            categories.addAll(category.getChildren());
+            numElements += category.getElements().size();
+        }
+        return new CompactCategoryTree<T>(categories, numElements);
+    }
+    
+    /**
+     * The distinct names of the categories
+     */
+    private final String[] names;
+    
+    /**
+     * The mapping from the distinct names to their index in the
+     * {@link #names} array
+     */
+    private final Map<String, Integer> nameIds;
+    
+    /**
+     * The index of the name of each category in the {@link #names}
+     */
+    private final int[] categoryNameIds;
+    
+    /**
+     * The index of the parent of each category. This is -1 for the root.
+     */
+    private final int[] parents;
+    
+    /**
+     * The index of the first child of each category. The children of
+     * category <code>i</code> have the indices from 
+     * <code>childStarts[i]</code> (inclusive) to 
+     * <code>childStarts[i+1]</code> (exclusive).
+     */
+    private final int[] childStarts;
+    
+    /**
+     * The elements of all categories
+     */
+    private final Object[] elements;
+    
+    /**
+     * The index of the first element of each category. The elements of
+     * category <code>i</code> have the indices from 
+     * <code>elementStarts[i]</code> (inclusive) to 
+     * <code>elementStarts[i+1]</code> (exclusive).
+     */
+    private final int[] elementStarts;
+    
+    /**
+     * The hash code of each category
+     */
+    private final int[] hashCodes;
+    
+    /**
+     * An open-addressing hash table for looking up children by their 
+     * name. It contains the index of each category (except for the 
+     * root) plus one, at a position that is determined by the index
+     * of its parent and the index of its name. Empty slots are 0.
+     */
+    private final int[] childTable;
+    
+    /**
+     * Creates a new instance
+     * 
+     * @param categories The categories, in breadth-first order
+     * @param numElements The total number of elements
+     */
+    private CompactCategoryTree(
+        List<Category<T>> categories, int numElements)
+    {
+        int n = categories.size();
+        this.nameIds = new HashMap<String, Integer>();
+        this.categoryNameIds = new int[n];
+        this.parents = new int[n];
+        this.childStarts = new int[n + 1];
+        this.elements = new Object[numElements];
+        this.elementStarts = new int[n + 1];
+        
+        List<String> nameList = new ArrayList<String>();
+        parents[0] = -1;
+        int nextChild = 1;
+        int nextElement = 0;
+        for (int i = 0; i < n; i++)
+        {
+            Category<T> category = categories.get(i);
+            String name = category.getName();
+            Integer nameId = nameIds.get(name);
+            if (nameId == null)
+            {
+                nameId = nameList.size();
+                nameIds.put(name, nameId);
+                nameList.add(name);
+            }
+            categoryNameIds[i] = nameId;
+            
+            childStarts[i] = nextChild;
+            int numChildren = category.getChildren().size();
+            for (int c = 0; c < numChildren; c++)
+            {
+                parents[nextChild + c] = i;
+            }
+            nextChild += numChildren;
+            
+            elementStarts[i] = nextElement;
+            for (T element : category.getElements())
+            {
+                elements[nextElement] = element;
+                nextElement++;
+            }
+        }
+        childStarts[n] = nextChild;
+        elementStarts[n] = nextElement;
+        this.names = nameList.toArray(new String[0]);
+        this.hashCodes = computeHashCodes();
+        this.childTable = createChildTable();
+    }
+    
+    /**
+     * Compute the hash codes of all categories, in the same way as
+     * {@link CategoryEquality#hashCode(Category)}, from the hash 
+     * codes of their children
+     * 
+     * @return The hash codes
+     */
+    private int[] computeHashCodes()
+    {
+        int n = parents.length;
+        int[] result = new int[n];
+        for (int i = n - 1; i >= 0; i--)
+        {
+            int childrenHashCode = 1;
+            for (int c = childStarts[i]; c < childStarts[i + 1]; c++)
+            {
+                childrenHashCode = 31 * childrenHashCode + result[c];
+            }
+            int elementsHashCode = 1;
+            for (int e = elementStarts[i]; e < elementStarts[i + 1]; e++)
+            {
+                Object element = elements[e];
+                elementsHashCode = 31 * elementsHashCode + 
+                    (element == null ? 0 : element.hashCode());
+            }
+            int hashCode = 31 + getName(i).hashCode();
+            hashCode = 31 * hashCode + childrenHashCode;
+            hashCode = 31 * hashCode + elementsHashCode;
+            result[i] = hashCode;
+        }
+        return result;
+    }
+    
+    /**
+     * Create the {@link #childTable}
+     * 
+     * @return The table
+     */
+    private int[] createChildTable()
+    {
+        int n = parents.length;
+        int capacity = Integer.highestOneBit(Math.max(2, n) * 2 - 1) << 1;
+        int[] table = new int[capacity];
+        int mask = capacity - 1;
+        for (int i = 1; i < n; i++)
+        {
+            int slot = slot(parents[i], categoryNameIds[i]) & mask;
+            while (table[slot] != 0)
+            {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = i + 1;
+        }
+        return table;
+    }
+    
+    /**
+     * Computes the initial slot in the {@link #childTable} for a child 
+     * with the given parent and name index
+     * 
+     * @param parent The index of the parent
+     * @param nameId The index of the name
+     * @return The slot, before applying the table mask
+     */
+    private static int slot(int parent, int nameId)
+    {
+        int h = parent * 31 + nameId;
+        return h ^ (h >>> 16);
+    }
+    
+    /**
+     * Returns the root category of this tree
+     * 
+     * @return The root category
+     */
+    CompactCategory<T> getRoot()
+    {
+        return new CompactCategory<T>(this, 0);
+    }
+    
+    /**
+     * Returns the name of the category with the given index
+     * 
+     * @param index The index of the category
+     * @return The name
+     */
+    String getName(int index)
+    {
+        return names[categoryNameIds[index]];
+    }
+    
+    /**
+     * Returns the hash code of the category with the given index
+     * 
+     * @param index The index of the category
+     * @return The hash code
+     */
+    int getHashCode(int index)
+    {
+        return hashCodes[index];
+    }
+    
+    /**
+     * Returns an unmodifiable list containing views on the children of
+     * the category with the given index
+     * 
+     * @param index The index of the category
+     * @return The children
+     */
+    List<CompactCategory<T>> getChildren(int index)
+    {
+        final int start = childStarts[index];
+        final int end = childStarts[index + 1];
+        class ChildList extends AbstractList<CompactCategory<T>> 
+            implements RandomAccess
+        {
+            @Override
+            public CompactCategory<T> get(int i)
+            {
+                if (i < 0 || i >= end - start)
+                {
+                    throw new IndexOutOfBoundsException(
+                        "Index: " + i + ", size: " + (end - start));
+                }
+                return new CompactCategory<T>(
+                    CompactCategoryTree.this, start + i);
+            }
+    
+            @Override
+            public int size()
+            {
+                return end - start;
+            }
+        }
+        return new ChildList();
+    }
+    
+    /**
+     * Returns a view on the child of the category with the given index
+     * that has the given name, or <code>null</code> if there is no such
+     * child
+     * 
+     * @param index The index of the category
+     * @param name The name of the child
+     * @return The child
+     */
+    CompactCategory<T> getChild(int index, String name)
+    {
+        Integer nameId = nameIds.get(name);
+        if (nameId == null)
+        {
+            return null;
+        }
+        int mask = childTable.length - 1;
+        int slot = slot(index, nameId) & mask;
+        while (childTable[slot] != 0)
+        {
+            int child = childTable[slot] - 1;
+            if (parents[child] == index && categoryNameIds[child] == nameId)
+            {
+                return new CompactCategory<T>(this, child);
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+    
+    /**
+     * Returns an unmodifiable list containing the elements of the 
+     * category with the given index
+     * 
+     * @param index The index of the category
+     * @return The elements
+     */
+    List<T> getElements(int index)
+    {
+        final int start = elementStarts[index];
+        final int end = elementStarts[index + 1];
+        class ElementList extends AbstractList<T> implements RandomAccess
+        {
+            @Override
+            public T get(int i)
+            {
+                if (i < 0 || i >= end - start)
+                {
+                    throw new IndexOutOfBoundsException(
+                        "Index: " + i + ", size: " + (end - start));
+                }
+                @SuppressWarnings("unchecked")
+                T element = (T) elements[start + i];
+                return element;
+            }
+    
+            @Override
+            public int size()
+            {
+                return end - start;
+            }
+        }
+        return new ElementList();
+    }
+    
+    /**
+     * Returns whether the category with the given index contains the
+     * given element
+     * 
+     * @param index The index of the category
+     * @param element The element
+     * @return Whether the element is contained
+     */
+    boolean containsElement(int index, Object element)
+    {
+        for (int e = elementStarts[index]; e < elementStarts[index + 1]; e++)
+        {
+            Object other = elements[e];
+            if (element == null ? other == null : element.equals(other))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,410 @@
+/*
+ * www.javagl.de - Category
+ *
+ * Copyright (c) 2012-2017 Marco Hutter - http://www.javagl.de
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.javagl.category;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Thread-safe implementation of a {@link MutableCategory}.<br>
+ * <br>
+ * The children of this category are stored in an immutable list that
+ * is replaced with a modified copy when the children are modified. 
+ * The elements are stored in an immutable list that is replaced with
+ * a new list when the elements are modified. When elements are added,
+ * the new list shares the array of the previous list, and the array 
+ * only grows geometrically, so that adding elements takes amortized
+ * time that is proportional to the number of added elements. Reading
+ * the children or elements therefore does not require any locking. 
+ * Each category uses its own lock for modifications, so that 
+ * modifications of different categories do not contend.<br>
+ * <br>
+ * The events for a modification are fired while the lock of the 
+ * category that was modified is held. This means that all listeners
+ * will receive the events from one category in the order in which
+ * the modifications have been performed. Listeners that are attached
+ * to one category may receive the events from different children 
+ * concurrently, from different threads. Listeners should not modify 
+ * other categories of the same hierarchy.
+ * 
+ * @param <T> The type of the elements in this {@link Category}
+ */
+final class ConcurrentCategory<T> implements MutableCategory<T>
+{
+    /**
+     * The name of this category
+     */
+    private final String name;
+    
+    /**
+     * The lock for modifications of this category
+     */
+    private final Object lock = new Object();
+    
+    /**
+     * The children of this category, mapped by their names
+     */
+    private final ConcurrentMap<String, MutableCategory<T>> childMap;
+    
+    /**
+     * The unmodifiable list of children of this category, in the order 
+     * in which they have been added. This is replaced with a new list
+     * whenever the children are modified.
+     */
+    private volatile List<MutableCategory<T>> children;
+    
+    /**
+     * An immutable list that is backed by a prefix of an array. The 
+     * elements of the array that are part of the list are never 
+     * modified. When elements are appended, they are written into the
+     * array behind the prefix if the array is large enough, and a new
+     * list with a longer prefix is created.
+     * 
+     * @param <T> The type of the elements
+     */
+    private static final class ElementList<T> extends AbstractList<T> 
+        implements RandomAccess
+    {
+        /**
+         * The empty list
+         */
+        private static final ElementList<Object> EMPTY = 
+            new ElementList<Object>(new Object[0], 0);
+        
+        /**
+         * The array
+         */
+        private final Object[] array;
+        
+        /**
+         * The number of elements of the array that are part of this list
+         */
+        private final int size;
+        
+        /**
+         * Creates a new instance
+         * 
+         * @param array The array
+         * @param size The size
+         */
+        ElementList(Object[] array, int size)
+        {
+            this.array = array;
+            this.size = size;
+        }
+        
+        /**
+         * Returns the empty list
+         * 
+         * @param <T> The type of the elements
+         * 
+         * @return The empty list
+         */
+        @SuppressWarnings("unchecked")
+        static <T> ElementList<T> empty()
+        {
+            return (ElementList<T>) EMPTY;
+        }
+        
+        /**
+         * Returns a list that contains the elements of this list, 
+         * followed by the given elements. This must only be called
+         * for the most recent list of a category, while holding the 
+         * lock of the category.
+         * 
+         * @param elements The elements to append
+         * @return The new list
+         */
+        ElementList<T> append(List<? extends T> elements)
+        {
+            int newSize = size + elements.size();
+            Object[] newArray = array;
+            if (newSize > array.length)
+            {
+                newArray = Arrays.copyOf(
+                    array, Math.max(newSize, array.length * 2));
+            }
+            for (int i = 0; i < elements.size(); i++)
+            {
+                newArray[size + i] = elements.get(i);
+            }
+            return new ElementList<T>(newArray, newSize);
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public T get(int index)
+        {
+            if (index < 0 || index >= size)
+            {
+                throw new IndexOutOfBoundsException(
+                    "Index: " + index + ", size: " + size);
+            }
+            return (T) array[index];
+        }
+
+        @Override
+        public int size()
+        {
+            return size;
+        }
+    }
+    
+    /**
+     * The immutable list of elements of this category. This is replaced 
+     * with a new list whenever the elements are modified.
+     */
+    private volatile ElementList<T> elements;
+    
+    /**
+     * The {@link CategoryListenerSupport} managing the listeners that 
+     * are attached to this category
+     */
+    private final CategoryListenerSupport<T> listenerSupport;
+    
+    /**
+     * Creates a new category. 
+     * 
+     * @param name The name of the category
+     */
+    ConcurrentCategory(String name)
+    {
+        this.name = Objects.requireNonNull(name, "The name may not be null");
+        this.childMap = new ConcurrentHashMap<String, MutableCategory<T>>();
+        this.children = Collections.emptyList();
+        this.elements = ElementList.empty();
+        this.listenerSupport = new CategoryListenerSupport<T>(this);
+    }
+    
+    @Override
+    public String getName()
+    {
+        return name;
+    }
+
+    @Override
+    public MutableCategory<T> addChild(String name)
+    {
+        Objects.requireNonNull(name, "The name may not be null");
+        MutableCategory<T> present = childMap.get(name);
+        if (present != null)
+        {
+            return present;
+        }
+        synchronized (lock)
+        {
+            present = childMap.get(name);
+            if (present != null)
+            {
+                return present;
+            }
+            MutableCategory<T> child = new ConcurrentCategory<T>(name);
+            child.addCategoryListener(
+                listenerSupport.getForwardingListener());
+            List<MutableCategory<T>> newChildren = 
+                new ArrayList<MutableCategory<T>>(children.size() + 1);
+            newChildren.addAll(children);
+            newChildren.add(child);
+            childMap.put(name, child);
+            children = Collections.unmodifiableList(newChildren);
+            listenerSupport.fireChildAdded(child);
+            return child;
+        }
+    }
+
+    @Override
+    public MutableCategory<T> removeChild(String name)
+    {
+        synchronized (lock)
+        {
+            MutableCategory<T> removedChild = childMap.remove(name);
+            if (removedChild != null)
+            {
+                List<MutableCategory<T>> newChildren = 
+                    new ArrayList<MutableCategory<T>>(children);
+                newChildren.remove(removedChild);
+                children = Collections.unmodifiableList(newChildren);
+                removedChild.removeCategoryListener(
+                    listenerSupport.getForwardingListener());
+                listenerSupport.fireChildRemoved(removedChild);
+            }
+            return removedChild;
+        }
+    }
+    
+    @Override
+    public void removeAllChildren()
+    {
+        synchronized (lock)
+        {
+            List<MutableCategory<T>> removedChildren = children;
+            if (removedChildren.isEmpty())
+            {
+                return;
+            }
+            children = Collections.emptyList();
+            childMap.clear();
+            for (MutableCategory<T> child : removedChildren)
+            {
+                child.removeCategoryListener(
+                    listenerSupport.getForwardingListener());
+            }
+            listenerSupport.fireChildrenRemoved(removedChildren);
+        }
+    }
+
+    @Override
+    public MutableCategory<T> getChild(String name)
+    {
+        return childMap.get(name);
+    }
+    
+    @Override
+    public List<MutableCategory<T>> getChildren()
+    {
+        return children;
+    }
+
+    @Override
+    public boolean addElements(Iterable<? extends T> elements)
+    {
+        if (elements == null)
+        {
+            return false;
+        }
+        List<T> added = new ArrayList<T>();
+        for (T element : elements)
+        {
+            added.add(element);
+        }
+        if (added.isEmpty())
+        {
+            return false;
+        }
+        synchronized (lock)
+        {
+            this.elements = this.elements.append(added);
+            listenerSupport.fireOwnedElementsAdded(added);
+            return true;
+        }
+    }
+
+    @Override
+    public boolean removeElements(Iterable<? extends T> elements)
+    {
+        if (elements == null)
+        {
+            return false;
+        }
+        synchronized (lock)
+        {
+            List<T> newElements = new ArrayList<T>(this.elements);
+            List<T> removed = 
+                DefaultCategory.removeFirstOccurrences(newElements, elements);
+            if (removed.isEmpty())
+            {
+                return false;
+            }
+            this.elements = new ElementList<T>(
+                newElements.toArray(), newElements.size());
+            listenerSupport.fireOwnedElementsRemoved(removed);
+            return true;
+        }
+    }
+    
+    @Override
+    public void removeAllElements()
+    {
+        synchronized (lock)
+        {
+            List<T> removed = this.elements;
+            if (removed.isEmpty())
+            {
+                return;
+            }
+            this.elements = ElementList.empty();
+            listenerSupport.fireOwnedElementsRemoved(removed);
+        }
+    }
+
+    @Override
+    public boolean containsElement(Object element)
+    {
+        return elements.contains(element);
+    }
+
+    @Override
+    public List<T> getElements()
+    {
+        return elements;
+    }
+    
+    @Override
+    public void addCategoryListener(CategoryListener<T> listener)
+    {
+        listenerSupport.addCategoryListener(listener);
+    }
+
+    @Override
+    public void addCategoryListener(
+        CategoryListener<T> listener, CategoryEventFilter filter)
+    {
+        listenerSupport.addCategoryListener(listener, filter);
+    }
+
+    @Override
+    public void removeCategoryListener(CategoryListener<T> listener)
+    {
+        listenerSupport.removeCategoryListener(listener);
+    }
+
+    @Override
+    public String toString()
+    {
+        return name;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return CategoryEquality.hashCode(this);
+    }
+
+    @Override
+    public boolean equals(Object object)
+    {
+        return CategoryEquality.equals(this, object);
+    }
+    
+}
@@ -1,382 +1,645 @@
-/*
- * www.javagl.de - Category
- *
- * Copyright (c) 2012-2017 Marco Hutter - http://www.javagl.de
- * 
- * Permission is hereby granted, free of charge, to any person
- * obtaining a copy of this software and associated documentation
- * files (the "Software"), to deal in the Software without
- * restriction, including without limitation the rights to use,
- * copy, modify, merge, publish, distribute, sublicense, and/or sell
- * copies of the Software, and to permit persons to whom the
- * Software is furnished to do so, subject to the following
- * conditions:
- * 
- * The above copyright notice and this permission notice shall be
- * included in all copies or substantial portions of the Software.
- * 
- * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
- * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
- * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
- * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
- * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
- * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
- * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
- * OTHER DEALINGS IN THE SOFTWARE.
- */
-
-package de.javagl.category;
-
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-import java.util.Objects;
-import java.util.concurrent.CopyOnWriteArrayList;
-
-/**
- * Default implementation of a {@link MutableCategory}
- * 
- * @param <T> The type of the elements in this {@link Category}
- */
-final class DefaultCategory<T> implements MutableCategory<T>
-{
-    /**
-     * The name of this category
-     */
-    private final String name;
-    
-    /**
-     * The list of children of this category
-     */
-    private final List<MutableCategory<T>> children;
-    
-    /**
-     * The elements in this category
-     */
-    private final List<T> elements;
-    
-    /**
-     * The listeners that are attached to this category
-     */
-    private final List<CategoryListener<T>> categoryListeners;
-    
-    /**
-     * A {@link CategoryListener} that will forward all events from child
-     * categories to the listeners that are attached to
-     * this category.
-     */
-    private final CategoryListener<T> forwardingListener = 
-        new CategoryListener<T>()
-    {
-        @Override
-        public void elementsAdded(CategoryEvent<T> event)
-        {
-            for (CategoryListener<T> listener : categoryListeners)
-            {
-                listener.elementsAdded(event);
-            }
-        }
-
-        @Override
-        public void elementsRemoved(CategoryEvent<T> event)
-        {
-            for (CategoryListener<T> listener : categoryListeners)
-            {
-                listener.elementsRemoved(event);
-            }
-        }
-
-        @Override
-        public void childAdded(CategoryEvent<T> event)
-        {
-            for (CategoryListener<T> listener : categoryListeners)
-            {
-                listener.childAdded(event);
-            }
-        }
-
-        @Override
-        public void childRemoved(CategoryEvent<T> event)
-        {
-            for (CategoryListener<T> listener : categoryListeners)
-            {
-                listener.childRemoved(event);
-            }
-        }
-    };
-    
-    
-    /**
-     * Creates a new category. 
-     * 
-     * @param name The name of the category
-     */
-    DefaultCategory(String name)
-    {
-        this.name = Objects.requireNonNull(name, "The name may not be null");
-        this.children = new ArrayList<MutableCategory<T>>();
-        this.categoryListeners = 
-            new CopyOnWriteArrayList<CategoryListener<T>>();
-        this.elements = new ArrayList<T>();
-    }
-    
-    /**
-     * Package-private method to add a child category. This method will not
-     * cause an event to be fired.
-     * 
-     * @param child The child category
-     */
-    void addChild(MutableCategory<T> child)
-    {
-        Objects.requireNonNull(child, "The child may not be null");
-        this.children.add(child);
-        child.addCategoryListener(forwardingListener);
-    }
-    
-    @Override
-    public String getName()
-    {
-        return name;
-    }
-
-    @Override
-    public MutableCategory<T> addChild(String name)
-    {
-        Objects.requireNonNull(name, "The name may not be null");
-        MutableCategory<T> present = getChild(name);
-        if (present != null)
-        {
-            return present;
-        }
-        MutableCategory<T> child = new DefaultCategory<T>(name);
-        addChild(child);
-        fireChildAdded(child);
-        return child;
-    }
-    
-
-    @Override
-    public MutableCategory<T> removeChild(String name)
-    {
-        MutableCategory<T> removedChild = getChild(name);
-        if (removedChild != null)
-        {
-            children.remove(removedChild);
-            removedChild.removeCategoryListener(forwardingListener);
-            fireChildRemoved(removedChild);
-        }
-        return removedChild;
-    }
-    
-    @Override
-    public void removeAllChildren()
-    {
-        List<MutableCategory<T>> removedChildren = getChildren();
-        for (MutableCategory<T> child : removedChildren)
-        {
-            removeChild(child.getName());
-        }
-    }
-
-    @Override
-    public MutableCategory<T> getChild(String name)
-    {
-        for (MutableCategory<T> child : children)
-        {
-            if (child.getName().equals(name))
-            {
-                return child;
-            }
-        }
-        return null;
-    }
-    
-    @Override
-    public List<MutableCategory<T>> getChildren()
-    {
-        return Collections.unmodifiableList(
-            new ArrayList<MutableCategory<T>>(children));
-    }
-
-    @Override
-    public boolean addElements(Iterable<? extends T> elements)
-    {
-        boolean changed = false;
-        if (elements != null)
-        {
-            for (T element : elements)
-            {
-                changed |= this.elements.add(element);
-            }
-            if (changed)
-            {
-                fireElementsAdded(elements);
-            }
-        }
-        return changed;
-    }
-
-    @Override
-    public boolean removeElements(Iterable<? extends T> elements)
-    {
-        boolean changed = false; 
-        if (elements != null)
-        {
-            for (T element : elements)
-            {
-                changed |= this.elements.remove(element);
-            }
-            if (changed)
-            {
-                fireElementsRemoved(elements);
-            }
-        }
-        return changed;
-    }
-    
-    @Override
-    public void removeAllElements()
-    {
-        removeElements(getElements());
-    }
-
-    @Override
-    public List<T> getElements()
-    {
-        return Collections.unmodifiableList(new ArrayList<T>(elements));
-    }
-    
-    /**
-     * Notify each registered {@link CategoryListener} that the 
-     * given child was added
-     * 
-     * @param child The child that was added
-     */
-    private void fireChildAdded(Category<T> child)
-    {
-        if (!categoryListeners.isEmpty())
-        {
-            CategoryEvent<T> categoryEvent = 
-                new CategoryEvent<T>(this, null, child);
-            for (CategoryListener<T> listener : categoryListeners)
-            {
-                listener.childAdded(categoryEvent);
-            }
-        }
-    }
-
-    /**
-     * Notify each registered {@link CategoryListener} that the 
-     * given child was removed
-     * 
-     * @param child The child that was removed
-     */
-    private void fireChildRemoved(Category<T> child)
-    {
-        if (!categoryListeners.isEmpty())
-        {
-            CategoryEvent<T> categoryEvent = 
-                new CategoryEvent<T>(this, null, child);
-            for (CategoryListener<T> listener : categoryListeners)
-            {
-                listener.childRemoved(categoryEvent);
-            }
-        }
-    }
-
-    /**
-     * Notify each registered {@link CategoryListener} that the 
-     * given elements have been added
-     * 
-     * @param elements The element that have been added
-     */
-    private void fireElementsAdded(Iterable<? extends T> elements)
-    {
-        if (!categoryListeners.isEmpty())
-        {
-            CategoryEvent<T> categoryEvent = 
-                new CategoryEvent<T>(this, elements, null);
-            for (CategoryListener<T> listener : categoryListeners)
-            {
-                listener.elementsAdded(categoryEvent);
-            }
-        }
-    }
-
-    /**
-     * Notify each registered {@link CategoryListener} that the 
-     * given elements have been removed
-     * 
-     * @param elements The elements that have been removed
-     */
-    private void fireElementsRemoved(Iterable<? extends T> elements)
-    {
-        if (!categoryListeners.isEmpty())
-        {
-            CategoryEvent<T> categoryEvent = 
-                new CategoryEvent<T>(this, elements, null);
-            for (CategoryListener<T> listener : categoryListeners)
-            {
-                listener.elementsRemoved(categoryEvent);
-            }
-        }
-    }
-    
-    @Override
-    public void addCategoryListener(CategoryListener<T> listener)
-    {
-        categoryListeners.add(listener);
-    }
-
-    @Override
-    public void removeCategoryListener(CategoryListener<T> listener)
-    {
-        categoryListeners.remove(listener);
-    }
-
-
-    @Override
-    public String toString()
-    {
-        return name;
-    }
-
-    @Override
-    public int hashCode()
-    {
-        return Objects.hash(name, children, elements);
-    }
-
-    @Override
-    public boolean equals(Object object)
-    {
-        if (this == object)
-        {
-            return true;
-        }
-        if (object == null)
-        {
-            return false;
-        }
-        if (!(object instanceof Category))
-        {
-            return false;
-        }
-        Category<?> other = (Category<?>) object;
-        
-        if (!Objects.equals(name, other.getName()))
-        {
-            return false;
-        }
-        if (!Objects.equals(children, other.getChildren()))
-        {
-            return false;
-        }
-        if (!Objects.equals(elements, other.getElements()))
-        {
-            return false;
-        }
-        return true;
-    }
-    
-}
+/*
+ * www.javagl.de - Category
+ *
+ * Copyright (c) 2012-2017 Marco Hutter - http://www.javagl.de
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package de.javagl.category;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Default implementation of a {@link MutableCategory}
+ * 
+ * @param <T> The type of the elements in this {@link Category}
+ */
+final class DefaultCategory<T> implements MutableCategory<T>
+{
+    /**
+     * The name of this category
+     */
+    private final String name;
+    
+    /**
+     * The children of this category, mapped by their names. The
+     * iteration order of this map is the order in which the 
+     * children have been added.
+     */
+    private final Map<String, MutableCategory<T>> children;
+    
+    /**
+     * Whether the elements of this category are unique. If this is
+     * <code>true</code>, the elements are stored in a set, and the
+     * same setting is used for all children
+     */
+    private final boolean uniqueElements;
+    
+    /**
+     * The elements in this category. Depending on {@link #uniqueElements},
+     * this is either a list or an insertion-ordered set.
+     */
+    private Collection<T> elements;
+    
+    /**
+     * An unmodifiable copy of the children of this category that is
+     * returned by {@link #getChildren()}. This is created lazily, and 
+     * set to <code>null</code> whenever the children are modified.
+     */
+    private List<MutableCategory<T>> childrenSnapshot;
+    
+    /**
+     * An unmodifiable copy of the elements of this category that is
+     * returned by {@link #getElements()}. This is created lazily, and 
+     * set to <code>null</code> whenever the elements are modified.
+     */
+    private List<T> elementsSnapshot;
+    
+    /**
+     * The parent of this category, or <code>null</code> if this category
+     * is not a child of another {@link DefaultCategory}
+     */
+    private DefaultCategory<T> parent;
+    
+    /**
+     * The most recent immutable snapshot of this category that was 
+     * created with {@link #createSnapshot()}, or <code>null</code> 
+     * if no snapshot was created yet
+     */
+    private ImmutableCategory<T> snapshot;
+    
+    /**
+     * Whether the {@link #snapshot} still reflects the current state of
+     * this category and all its descendants. This is set to 
+     * <code>false</code> for this category and all its ancestors
+     * whenever this category is modified.
+     */
+    private boolean snapshotValid;
+    
+    /**
+     * The list of children that was used for creating the last 
+     * {@link #snapshot}. If the children have not been modified since 
+     * then, the new snapshot can re-use the mapping from names to 
+     * children of the last snapshot.
+     */
+    private List<MutableCategory<T>> snapshotChildren;
+    
+    /**
+     * The hash code of this category. This is computed lazily, from the
+     * cached hash codes of the children, and set to <code>null</code> 
+     * for this category and all its ancestors whenever this category 
+     * is modified.
+     */
+    private Integer hashCode;
+    
+    /**
+     * The hash code of the list of elements of this category. This is
+     * computed lazily, and set to <code>null</code> whenever the 
+     * elements of this category are modified.
+     */
+    private Integer elementsHashCode;
+    
+    /**
+     * The {@link CategoryListenerSupport} managing the listeners that 
+     * are attached to this category
+     */
+    private final CategoryListenerSupport<T> listenerSupport;
+    
+    /**
+     * The optional {@link CategoryNameDictionary} that provides the 
+     * canonical instances of the names of this category and all its 
+     * children
+     */
+    private final CategoryNameDictionary nameDictionary;
+    
+    /**
+     * Creates a new category. 
+     * 
+     * @param name The name of the category
+     */
+    DefaultCategory(String name)
+    {
+        this(name, false);
+    }
+    
+    /**
+     * Creates a new category. If <code>uniqueElements</code> is 
+     * <code>true</code>, then the elements of this category and all
+     * its children will be stored in insertion-ordered sets, so that
+     * each element can be contained at most once, and checking whether
+     * an element is contained or removing an element can be done in
+     * constant time.
+     * 
+     * @param name The name of the category
+     * @param uniqueElements Whether the elements should be unique
+     */
+    DefaultCategory(String name, boolean uniqueElements)
+    {
+        this(name, uniqueElements, null);
+    }
+    
+    /**
+     * Creates a new category. If the given {@link CategoryNameDictionary}
+     * is not <code>null</code>, then the name of this category and all 
+     * its children will be replaced by their canonical instances from 
+     * the dictionary. See {@link #DefaultCategory(String, boolean)} for
+     * details about the <code>uniqueElements</code> flag.
+     * 
+     * @param name The name of the category
+     * @param uniqueElements Whether the elements should be unique
+     * @param nameDictionary The optional {@link CategoryNameDictionary}
+     */
+    DefaultCategory(String name, boolean uniqueElements, 
+        CategoryNameDictionary nameDictionary)
+    {
+        Objects.requireNonNull(name, "The name may not be null");
+        this.name = nameDictionary == null ? 
+            name : nameDictionary.intern(name);
+        this.nameDictionary = nameDictionary;
+        this.children = new LinkedHashMap<String, MutableCategory<T>>();
+        this.listenerSupport = new CategoryListenerSupport<T>(this);
+        this.uniqueElements = uniqueElements;
+        this.elements = createElementsCollection();
+    }
+    
+    /**
+     * Creates a new, empty collection for storing the elements of this
+     * category, depending on whether the elements should be unique
+     * 
+     * @return The new collection
+     */
+    private Collection<T> createElementsCollection()
+    {
+        if (uniqueElements)
+        {
+            return new LinkedHashSet<T>();
+        }
+        return new ArrayList<T>();
+    }
+    
+    /**
+     * Package-private method to add a child category. This method will not
+     * cause an event to be fired.
+     * 
+     * @param child The child category
+     */
+    void addChild(MutableCategory<T> child)
+    {
+        Objects.requireNonNull(child, "The child may not be null");
+        this.children.put(child.getName(), child);
+        childrenChanged();
+        child.addCategoryListener(
+            listenerSupport.getForwardingListener());
+        if (child instanceof DefaultCategory<?>)
+        {
+            DefaultCategory<T> defaultChild = (DefaultCategory<T>) child;
+            defaultChild.parent = this;
+        }
+    }
+    
+    /**
+     * Detach the given child, which has already been removed from the
+     * {@link #children}, from this category
+     * 
+     * @param child The child
+     */
+    private void detachChild(MutableCategory<T> child)
+    {
+        child.removeCategoryListener(
+            listenerSupport.getForwardingListener());
+        if (child instanceof DefaultCategory<?>)
+        {
+            DefaultCategory<T> defaultChild = (DefaultCategory<T>) child;
+            defaultChild.parent = null;
+        }
+    }
+    
+    /**
+     * Will be called whenever the children of this category changed
+     */
+    private void childrenChanged()
+    {
+        childrenSnapshot = null;
+        invalidateSnapshots();
+    }
+    
+    /**
+     * Will be called whenever the elements of this category changed
+     */
+    private void elementsChanged()
+    {
+        elementsSnapshot = null;
+        elementsHashCode = null;
+        invalidateSnapshots();
+    }
+    
+    /**
+     * Mark the snapshots and hash codes of this category and all its 
+     * ancestors as being invalid. Whenever the snapshot or hash code 
+     * of a category is invalid, then the snapshots or hash codes of 
+     * all its ancestors are invalid as well, so this can stop at the 
+     * first category where both are already invalid.
+     */
+    private void invalidateSnapshots()
+    {
+        DefaultCategory<T> current = this;
+        while (current != null && 
+            (current.snapshotValid || current.hashCode != null))
+        {
+            current.snapshotValid = false;
+            current.hashCode = null;
+            current = current.parent;
+        }
+    }
+    
+    /**
+     * Package-private method to obtain an immutable snapshot of this
+     * category. If this category and its descendants have not been 
+     * modified since the last snapshot was created, then the last 
+     * snapshot will be returned. Otherwise, a new snapshot will be 
+     * created, re-using the snapshots of all children that have not 
+     * been modified.
+     * 
+     * @return The snapshot
+     */
+    ImmutableCategory<T> createSnapshot()
+    {
+        if (snapshotValid)
+        {
+            return snapshot;
+        }
+        List<MutableCategory<T>> currentChildren = getChildren();
+        List<ImmutableCategory<T>> childSnapshots = 
+            new ArrayList<ImmutableCategory<T>>(currentChildren.size());
+        for (MutableCategory<T> child : currentChildren)
+        {
+            childSnapshots.add(ImmutableCategory.copyOf(child));
+        }
+        ImmutableCategory<T> previous = null;
+        if (currentChildren == snapshotChildren)
+        {
+            previous = snapshot;
+        }
+        snapshot = new ImmutableCategory<T>(
+            name, childSnapshots, getElements(), previous);
+        snapshotChildren = currentChildren;
+        snapshotValid = true;
+        return snapshot;
+    }
+    
+    @Override
+    public String getName()
+    {
+        return name;
+    }
+
+    @Override
+    public MutableCategory<T> addChild(String name)
+    {
+        Objects.requireNonNull(name, "The name may not be null");
+        MutableCategory<T> present = getChild(name);
+        if (present != null)
+        {
+            return present;
+        }
+        MutableCategory<T> child = createChild(name);
+        addChild(child);
+        listenerSupport.fireChildAdded(child);
+        return child;
+    }
+    
+    /**
+     * Package-private method to add a chain of child categories with 
+     * the given names, starting at the given index. The first name 
+     * must not be the name of an existing child. The chain will be 
+     * built before it is attached to this category, so that only a 
+     * single event will be fired, for the first child of the chain.
+     * 
+     * @param names The names of the categories
+     * @param fromIndex The index of the first name to use
+     * @return The last category of the chain
+     */
+    MutableCategory<T> addChildChain(List<String> names, int fromIndex)
+    {
+        DefaultCategory<T> first = createChild(names.get(fromIndex));
+        DefaultCategory<T> last = first;
+        for (int i = fromIndex + 1; i < names.size(); i++)
+        {
+            DefaultCategory<T> next = createChild(names.get(i));
+            last.addChild(next);
+            last = next;
+        }
+        adoptChild(first);
+        return last;
+    }
+    
+    /**
+     * Package-private method to create a new category that has the same
+     * settings as this category, but is not yet attached to this 
+     * category. It may be attached with {@link #adoptChild}.
+     * 
+     * @param name The name of the new category
+     * @return The new category
+     */
+    DefaultCategory<T> createChild(String name)
+    {
+        return new DefaultCategory<T>(name, uniqueElements, nameDictionary);
+    }
+    
+    /**
+     * Package-private method to add the given child category, which may
+     * already have children and elements. A single event will be fired 
+     * for the child.
+     * 
+     * @param child The child category
+     */
+    void adoptChild(MutableCategory<T> child)
+    {
+        addChild(child);
+        listenerSupport.fireChildAdded(child);
+    }
+    
+
+    @Override
+    public MutableCategory<T> removeChild(String name)
+    {
+        MutableCategory<T> removedChild = children.remove(name);
+        if (removedChild != null)
+        {
+            childrenChanged();
+            detachChild(removedChild);
+            listenerSupport.fireChildRemoved(removedChild);
+        }
+        return removedChild;
+    }
+    
+    @Override
+    public void removeAllChildren()
+    {
+        if (children.isEmpty())
+        {
+            return;
+        }
+        List<MutableCategory<T>> removedChildren = getChildren();
+        children.clear();
+        childrenChanged();
+        for (MutableCategory<T> child : removedChildren)
+        {
+            detachChild(child);
+        }
+        listenerSupport.fireChildrenRemoved(removedChildren);
+    }
+
+    @Override
+    public MutableCategory<T> getChild(String name)
+    {
+        return children.get(name);
+    }
+    
+    @Override
+    public List<MutableCategory<T>> getChildren()
+    {
+        if (childrenSnapshot == null)
+        {
+            childrenSnapshot = Collections.unmodifiableList(
+                new ArrayList<MutableCategory<T>>(children.values()));
+        }
+        return childrenSnapshot;
+    }
+
+    @Override
+    public boolean addElements(Iterable<? extends T> elements)
+    {
+        if (elements == null)
+        {
+            return false;
+        }
+        // Collect the elements that have actually been added, in the 
+        // same pass, if any listener has to be informed about them
+        List<T> added = null;
+        if (listenerSupport.isObserved(CategoryEventType.ELEMENTS_ADDED))
+        {
+            added = new ArrayList<T>();
+        }
+        boolean changed = false;
+        for (T element : elements)
+        {
+            if (this.elements.add(element))
+            {
+                changed = true;
+                if (added != null)
+                {
+                    added.add(element);
+                }
+            }
+        }
+        if (!changed)
+        {
+            return false;
+        }
+        elementsChanged();
+        if (added != null)
+        {
+            listenerSupport.fireOwnedElementsAdded(added);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean removeElements(Iterable<? extends T> elements)
+    {
+        if (elements == null)
+        {
+            return false;
+        }
+        List<T> removed = null;
+        if (uniqueElements)
+        {
+            removed = new ArrayList<T>();
+            for (T element : elements)
+            {
+                if (this.elements.remove(element))
+                {
+                    removed.add(element);
+                }
+            }
+        }
+        else
+        {
+            List<T> list = (List<T>) this.elements;
+            removed = removeFirstOccurrences(list, elements);
+        }
+        if (removed.isEmpty())
+        {
+            return false;
+        }
+        elementsChanged();
+        listenerSupport.fireOwnedElementsRemoved(removed);
+        return true;
+    }
+    
+    /**
+     * Remove the given elements from the given list in a single pass. 
+     * For each occurrence of an element in the given sequence, the first 
+     * remaining occurrence of this element in the list will be removed.
+     * 
+     * @param <T> The type of the elements
+     * 
+     * @param list The list to remove the elements from
+     * @param elements The elements to remove
+     * @return The list of elements that have actually been removed
+     */
+    static <T> List<T> removeFirstOccurrences(
+        List<T> list, Iterable<? extends T> elements)
+    {
+        Map<Object, Integer> counts = new HashMap<Object, Integer>();
+        for (T element : elements)
+        {
+            Integer count = counts.get(element);
+            counts.put(element, count == null ? 1 : count + 1);
+        }
+        List<T> removed = new ArrayList<T>();
+        int n = list.size();
+        int target = 0;
+        for (int i = 0; i < n; i++)
+        {
+            T element = list.get(i);
+            Integer count = counts.isEmpty() ? null : counts.get(element);
+            if (count == null)
+            {
+                list.set(target, element);
+                target++;
+            }
+            else
+            {
+                removed.add(element);
+                if (count == 1)
+                {
+                    counts.remove(element);
+                }
+                else
+                {
+                    counts.put(element, count - 1);
+                }
+            }
+        }
+        list.subList(target, n).clear();
+        return removed;
+    }
+    
+    @Override
+    public void removeAllElements()
+    {
+        if (elements.isEmpty())
+        {
+            return;
+        }
+        Collection<T> removed = elements;
+        elements = createElementsCollection();
+        elementsChanged();
+        listenerSupport.fireOwnedElementsRemoved(removed);
+    }
+
+    @Override
+    public boolean containsElement(Object element)
+    {
+        return elements.contains(element);
+    }
+
+    @Override
+    public List<T> getElements()
+    {
+        if (elementsSnapshot == null)
+        {
+            elementsSnapshot = 
+                Collections.unmodifiableList(new ArrayList<T>(elements));
+        }
+        return elementsSnapshot;
+    }
+    
+    /**
+     * Returns the number of elements in this category, without creating
+     * a snapshot of the elements
+     * 
+     * @return The number of elements
+     */
+    int getElementCount()
+    {
+        return elements.size();
+    }
+    
+    @Override
+    public void addCategoryListener(CategoryListener<T> listener)
+    {
+        listenerSupport.addCategoryListener(listener);
+    }
+
+    @Override
+    public void addCategoryListener(
+        CategoryListener<T> listener, CategoryEventFilter filter)
+    {
+        listenerSupport.addCategoryListener(listener, filter);
+    }
+
+    @Override
+    public void removeCategoryListener(CategoryListener<T> listener)
+    {
+        listenerSupport.removeCategoryListener(listener);
+    }
+
+
+    @Override
+    public String toString()
+    {
+        return name;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        if (hashCode == null)
+        {
+            if (elementsHashCode == null)
+            {
+                elementsHashCode = getElements().hashCode();
+            }
+            hashCode = CategoryEquality.hashCode(this, elementsHashCode);
+        }
+        return hashCode;
+    }
+
+    @Override
+    public boolean equals(Object object)
+    {
+        return CategoryEquality.equals(this, object);
+    }
+    
+}
@@ -0,0 +1,452 @@
+/*
+ * www.javagl.de - Category
+ *
+ * Copyright (c) 2012-2017 Marco Hutter - http://www.javagl.de
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.javagl.category;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.PrimitiveIterator;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.LongConsumer;
+
+/**
+ * Default implementation of a {@link LongCategory}, storing the elements
+ * in a growable <code>long[]</code> array
+ */
+final class DefaultLongCategory 
+    extends AbstractPrimitiveCategory<Long, DefaultLongCategory>
+    implements LongCategory
+{
+    /**
+     * An empty array
+     */
+    private static final long[] EMPTY = new long[0];
+    
+    /**
+     * The elements of this category. Only the first {@link #size}
+     * elements are valid.
+     */
+    private long[] elements;
+    
+    /**
+     * The number of elements in this category
+     */
+    private int size;
+    
+    /**
+     * An unmodifiable view on a copy of the elements of this category 
+     * that is returned by {@link #getElements()}. This is created lazily, 
+     * and set to <code>null</code> whenever the elements are modified.
+     */
+    private List<Long> elementsSnapshot;
+    
+    /**
+     * The {@link LongCategoryListener} instances that are attached to 
+     * this category
+     */
+    private final List<LongCategoryListener> longCategoryListeners;
+    
+    /**
+     * Creates a new category. 
+     * 
+     * @param name The name of the category
+     */
+    DefaultLongCategory(String name)
+    {
+        super(name);
+        this.elements = EMPTY;
+        this.longCategoryListeners = 
+            new CopyOnWriteArrayList<LongCategoryListener>();
+    }
+    
+    @Override
+    DefaultLongCategory createChild(String name)
+    {
+        return new DefaultLongCategory(name);
+    }
+    
+    @Override
+    DefaultLongCategory self()
+    {
+        return this;
+    }
+    
+    @Override
+    void elementsChanged()
+    {
+        elementsSnapshot = null;
+        super.elementsChanged();
+    }
+    
+    /**
+     * Make sure that the {@link #elements} array can store the 
+     * given number of elements
+     * 
+     * @param capacity The required capacity
+     */
+    private void ensureCapacity(int capacity)
+    {
+        if (capacity > elements.length)
+        {
+            int newCapacity = Math.max(capacity, elements.length * 2);
+            elements = Arrays.copyOf(elements, Math.max(newCapacity, 8));
+        }
+    }
+    
+    @Override
+    public boolean addElements(long[] elements)
+    {
+        if (elements == null || elements.length == 0)
+        {
+            return false;
+        }
+        ensureCapacity(size + elements.length);
+        System.arraycopy(elements, 0, this.elements, size, elements.length);
+        size += elements.length;
+        elementsChanged();
+        if (isObserved(CategoryEventType.ELEMENTS_ADDED))
+        {
+            fireElementsAdded(elements.clone());
+        }
+        return true;
+    }
+    
+    @Override
+    public boolean addElements(Iterable<? extends Long> elements)
+    {
+        if (elements == null)
+        {
+            return false;
+        }
+        int oldSize = size;
+        for (Long element : elements)
+        {
+            Objects.requireNonNull(element, 
+                "The elements may not contain null");
+            ensureCapacity(size + 1);
+            this.elements[size] = element;
+            size++;
+        }
+        if (size == oldSize)
+        {
+            return false;
+        }
+        elementsChanged();
+        if (isObserved(CategoryEventType.ELEMENTS_ADDED))
+        {
+            fireElementsAdded(
+                Arrays.copyOfRange(this.elements, oldSize, size));
+        }
+        return true;
+    }
+    
+    @Override
+    public boolean removeElements(long[] elements)
+    {
+        if (elements == null || elements.length == 0 || size == 0)
+        {
+            return false;
+        }
+        
+        // Compute the distinct values that should be removed, 
+        // and how often each value should be removed
+        long[] values = elements.clone();
+        Arrays.sort(values);
+        int[] counts = new int[values.length];
+        int numValues = 0;
+        for (long value : values)
+        {
+            if (numValues > 0 && values[numValues - 1] == value)
+            {
+                counts[numValues - 1]++;
+            }
+            else
+            {
+                values[numValues] = value;
+                counts[numValues] = 1;
+                numValues++;
+            }
+        }
+        
+        // Remove the first occurrences of the values in a single pass
+        long[] removed = new long[Math.min(size, elements.length)];
+        int numRemoved = 0;
+        int target = 0;
+        for (int i = 0; i < size; i++)
+        {
+            long element = this.elements[i];
+            int index = -1;
+            if (numRemoved < removed.length)
+            {
+                index = Arrays.binarySearch(values, 0, numValues, element);
+            }
+            if (index >= 0 && counts[index] > 0)
+            {
+                counts[index]--;
+                removed[numRemoved] = element;
+                numRemoved++;
+            }
+            else
+            {
+                this.elements[target] = element;
+                target++;
+            }
+        }
+        if (numRemoved == 0)
+        {
+            return false;
+        }
+        size = target;
+        elementsChanged();
+        if (isObserved(CategoryEventType.ELEMENTS_REMOVED))
+        {
+            fireElementsRemoved(Arrays.copyOf(removed, numRemoved));
+        }
+        return true;
+    }
+    
+    @Override
+    public boolean removeElements(Iterable<? extends Long> elements)
+    {
+        if (elements == null)
+        {
+            return false;
+        }
+        long[] array = new long[8];
+        int n = 0;
+        for (Long element : elements)
+        {
+            // A null element can not be contained in this category
+            if (element != null)
+            {
+                if (n == array.length)
+                {
+                    array = Arrays.copyOf(array, n * 2);
+                }
+                array[n] = element;
+                n++;
+            }
+        }
+        return removeElements(Arrays.copyOf(array, n));
+    }
+    
+    @Override
+    public void removeAllElements()
+    {
+        if (size == 0)
+        {
+            return;
+        }
+        long[] removed = null;
+        if (isObserved(CategoryEventType.ELEMENTS_REMOVED))
+        {
+            removed = Arrays.copyOf(elements, size);
+        }
+        elements = EMPTY;
+        size = 0;
+        elementsChanged();
+        if (removed != null)
+        {
+            fireElementsRemoved(removed);
+        }
+    }
+    
+    @Override
+    public boolean containsElement(Object element)
+    {
+        if (element instanceof Long)
+        {
+            return containsElement(((Long) element).longValue());
+        }
+        return false;
+    }
+    
+    @Override
+    public boolean containsElement(long element)
+    {
+        for (int i = 0; i < size; i++)
+        {
+            if (elements[i] == element)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    @Override
+    public List<Long> getElements()
+    {
+        if (elementsSnapshot == null)
+        {
+            if (size == 0)
+            {
+                elementsSnapshot = Collections.emptyList();
+            }
+            else
+            {
+                elementsSnapshot = 
+                    PrimitiveLists.asList(Arrays.copyOf(elements, size));
+            }
+        }
+        return elementsSnapshot;
+    }
+    
+    @Override
+    public int getElementCount()
+    {
+        return size;
+    }
+    
+    @Override
+    public long[] toElementArray()
+    {
+        return Arrays.copyOf(elements, size);
+    }
+    
+    @Override
+    public void forEachElement(LongConsumer consumer)
+    {
+        Objects.requireNonNull(consumer, "The consumer may not be null");
+        for (int i = 0; i < size; i++)
+        {
+            consumer.accept(elements[i]);
+        }
+    }
+    
+    @Override
+    public PrimitiveIterator.OfLong elementIterator()
+    {
+        return new PrimitiveIterator.OfLong()
+        {
+            /**
+             * The index of the next element
+             */
+            private int index = 0;
+            
+            @Override
+            public boolean hasNext()
+            {
+                return index < size;
+            }
+            
+            @Override
+            public long nextLong()
+            {
+                if (!hasNext())
+                {
+                    throw new NoSuchElementException("No more elements");
+                }
+                long element = elements[index];
+                index++;
+                return element;
+            }
+        };
+    }
+    
+    @Override
+    public void addLongCategoryListener(LongCategoryListener listener)
+    {
+        longCategoryListeners.add(listener);
+    }
+    
+    @Override
+    public void removeLongCategoryListener(LongCategoryListener listener)
+    {
+        longCategoryListeners.remove(listener);
+    }
+    
+    /**
+     * Returns whether any {@link LongCategoryListener} of this category or
+     * its ancestors, or any {@link CategoryListener}, has to be informed
+     * about an event of the given type. If this is not the case, then
+     * the elements for the event do not have to be copied.
+     * 
+     * @param type The type of the event
+     * @return Whether the event is observed
+     */
+    private boolean isObserved(CategoryEventType type)
+    {
+        DefaultLongCategory current = this;
+        while (current != null)
+        {
+            if (!current.longCategoryListeners.isEmpty())
+            {
+                return true;
+            }
+            current = current.getParent();
+        }
+        return listenerSupport.isObserved(type);
+    }
+    
+    /**
+     * Notify the {@link LongCategoryListener} instances of this category
+     * and all its ancestors, as well as all {@link CategoryListener}
+     * instances, that the given elements have been added
+     * 
+     * @param added The elements that have been added
+     */
+    private void fireElementsAdded(long[] added)
+    {
+        DefaultLongCategory current = this;
+        while (current != null)
+        {
+            for (LongCategoryListener listener : 
+                current.longCategoryListeners)
+            {
+                listener.elementsAdded(this, added);
+            }
+            current = current.getParent();
+        }
+        listenerSupport.fireOwnedElementsAdded(PrimitiveLists.asList(added));
+    }
+    
+    /**
+     * Notify the {@link LongCategoryListener} instances of this category
+     * and all its ancestors, as well as all {@link CategoryListener}
+     * instances, that the given elements have been removed
+     * 
+     * @param removed The elements that have been removed
+     */
+    private void fireElementsRemoved(long[] removed)
+    {
+        DefaultLongCategory current = this;
+        while (current != null)
+        {
+            for (LongCategoryListener listener : 
+                current.longCategoryListeners)
+            {
+                listener.elementsRemoved(this, removed);
+            }
+            current = current.getParent();
+        }
+        listenerSupport.fireOwnedElementsRemoved(
+            PrimitiveLists.asList(removed));
+    }
+}
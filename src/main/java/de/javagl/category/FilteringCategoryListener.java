@@ -0,0 +1,121 @@
+/*
+ * www.javagl.de - Category
+ *
+ * Copyright (c) 2012-2017 Marco Hutter - http://www.javagl.de
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.javagl.category;
+
+import java.util.Objects;
+
+/**
+ * Package-private implementation of a {@link CategoryListener} that
+ * passes only the events that are accepted by a 
+ * {@link CategoryEventFilter} to a delegate listener. This is used
+ * by the default implementation of 
+ * {@link Category#addCategoryListener(CategoryListener, CategoryEventFilter)}.
+ * <br>
+ * <br>
+ * Since the {@link Category} interface does not offer access to the 
+ * parent of a category, the depth and path of the category where an
+ * event originated are determined by searching for this category in
+ * the subtree that is described by the filter.
+ * 
+ * @param <T> The type of the elements in the {@link Category}
+ */
+final class FilteringCategoryListener<T> implements CategoryListener<T>
+{
+    /**
+     * The {@link Category} that this listener is attached to
+     */
+    private final Category<T> category;
+    
+    /**
+     * The delegate listener
+     */
+    private final CategoryListener<T> delegate;
+    
+    /**
+     * The {@link CategoryEventFilter}
+     */
+    private final CategoryEventFilter filter;
+    
+    /**
+     * Creates a new instance
+     * 
+     * @param category The {@link Category} that this listener is 
+     * attached to
+     * @param delegate The delegate listener
+     * @param filter The {@link CategoryEventFilter}
+     */
+    FilteringCategoryListener(Category<T> category, 
+        CategoryListener<T> delegate, CategoryEventFilter filter)
+    {
+        this.category = Objects.requireNonNull(
+            category, "The category may not be null");
+        this.delegate = Objects.requireNonNull(
+            delegate, "The delegate may not be null");
+        this.filter = Objects.requireNonNull(
+            filter, "The filter may not be null");
+    }
+
+    @Override
+    public void elementsAdded(CategoryEvent<T> event)
+    {
+        if (filter.matches(
+            CategoryEventType.ELEMENTS_ADDED, category, event.getCategory()))
+        {
+            delegate.elementsAdded(event);
+        }
+    }
+
+    @Override
+    public void elementsRemoved(CategoryEvent<T> event)
+    {
+        if (filter.matches(
+            CategoryEventType.ELEMENTS_REMOVED, category, event.getCategory()))
+        {
+            delegate.elementsRemoved(event);
+        }
+    }
+
+    @Override
+    public void childAdded(CategoryEvent<T> event)
+    {
+        if (filter.matches(
+            CategoryEventType.CHILD_ADDED, category, event.getCategory()))
+        {
+            delegate.childAdded(event);
+        }
+    }
+
+    @Override
+    public void childRemoved(CategoryEvent<T> event)
+    {
+        if (filter.matches(
+            CategoryEventType.CHILD_REMOVED, category, event.getCategory()))
+        {
+            delegate.childRemoved(event);
+        }
+    }
+}
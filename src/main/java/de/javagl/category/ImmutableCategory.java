@@ -0,0 +1,246 @@
+/*
+ * www.javagl.de - Category
+ *
+ * Copyright (c) 2012-2017 Marco Hutter - http://www.javagl.de
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.javagl.category;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Immutable implementation of a {@link Category}. Instances of this 
+ * class are created with {@link Categories#snapshot(Category)}.<br>
+ * <br>
+ * Instances of this class never change, and may therefore be shared 
+ * among threads without synchronization. Listeners that are added 
+ * to such a category will never be notified.
+ * 
+ * @param <T> The type of the elements in this {@link Category}
+ */
+final class ImmutableCategory<T> implements Category<T>
+{
+    /**
+     * The number of children above which the children will be looked
+     * up in a map, instead of searching the list of children
+     */
+    private static final int CHILD_MAP_THRESHOLD = 8;
+    
+    /**
+     * Creates an immutable copy of the given {@link Category}. If the 
+     * given category already is an {@link ImmutableCategory}, then it 
+     * is returned directly. If it is a {@link DefaultCategory}, then 
+     * its latest snapshot will be returned, or a new snapshot will be
+     * created that shares all unmodified parts with the previous one.
+     * 
+     * @param <T> The type of the elements in the {@link Category}
+     * 
+     * @param category The {@link Category}
+     * @return The {@link ImmutableCategory}
+     */
+    static <T> ImmutableCategory<T> copyOf(Category<T> category)
+    {
+        if (category instanceof ImmutableCategory<?>)
+        {
+            return (ImmutableCategory<T>) category;
+        }
+        if (category instanceof DefaultCategory<?>)
+        {
+            DefaultCategory<T> defaultCategory = 
+                (DefaultCategory<T>) category;
+            return defaultCategory.createSnapshot();
+        }
+        List<? extends Category<T>> children = category.getChildren();
+        List<ImmutableCategory<T>> childCopies = 
+            new ArrayList<ImmutableCategory<T>>(children.size());
+        for (Category<T> child : children)
+        {
+            childCopies.add(copyOf(child));
+        }
+        List<T> elements = Collections.unmodifiableList(
+            new ArrayList<T>(category.getElements()));
+        return new ImmutableCategory<T>(
+            category.getName(), childCopies, elements, null);
+    }
+    
+    /**
+     * The name of this category
+     */
+    private final String name;
+    
+    /**
+     * The unmodifiable list of children of this category
+     */
+    private final List<ImmutableCategory<T>> children;
+    
+    /**
+     * An unmodifiable mapping from the names of the children to their
+     * index in the list of children. This is <code>null</code> when 
+     * there are only a few children.
+     */
+    private final Map<String, Integer> childIndices;
+    
+    /**
+     * The unmodifiable list of elements of this category
+     */
+    private final List<T> elements;
+    
+    /**
+     * The hash code of this category, which is computed lazily
+     */
+    private Integer hashCode;
+    
+    /**
+     * Creates a new category. <br>
+     * <br>
+     * The given lists will be stored directly, and the given elements 
+     * must therefore be an unmodifiable list that is never changed.
+     * If a previous snapshot is given, then its children must have 
+     * the same names, in the same order, as the given children.
+     * 
+     * @param name The name
+     * @param children The children 
+     * @param elements The unmodifiable list of elements
+     * @param previous An optional previous snapshot, whose mapping from
+     * names to children may be re-used
+     */
+    ImmutableCategory(String name, List<ImmutableCategory<T>> children, 
+        List<T> elements, ImmutableCategory<T> previous)
+    {
+        this.name = Objects.requireNonNull(name, "The name may not be null");
+        this.children = Collections.unmodifiableList(children);
+        this.elements = elements;
+        if (previous != null)
+        {
+            this.childIndices = previous.childIndices;
+        }
+        else if (children.size() > CHILD_MAP_THRESHOLD)
+        {
+            Map<String, Integer> indices = new HashMap<String, Integer>();
+            for (int i = 0; i < children.size(); i++)
+            {
+                indices.put(children.get(i).getName(), i);
+            }
+            this.childIndices = Collections.unmodifiableMap(indices);
+        }
+        else
+        {
+            this.childIndices = null;
+        }
+    }
+    
+    @Override
+    public String getName()
+    {
+        return name;
+    }
+
+    @Override
+    public List<ImmutableCategory<T>> getChildren()
+    {
+        return children;
+    }
+
+    @Override
+    public ImmutableCategory<T> getChild(String name)
+    {
+        if (childIndices != null)
+        {
+            Integer index = childIndices.get(name);
+            if (index == null)
+            {
+                return null;
+            }
+            return children.get(index);
+        }
+        for (ImmutableCategory<T> child : children)
+        {
+            if (child.getName().equals(name))
+            {
+                return child;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public List<T> getElements()
+    {
+        return elements;
+    }
+
+    @Override
+    public boolean containsElement(Object element)
+    {
+        return elements.contains(element);
+    }
+
+    @Override
+    public void addCategoryListener(CategoryListener<T> listener)
+    {
+        // The category never changes, so the listener is never notified
+    }
+
+    @Override
+    public void addCategoryListener(
+        CategoryListener<T> listener, CategoryEventFilter filter)
+    {
+        // The category never changes, so the listener is never notified
+    }
+
+    @Override
+    public void removeCategoryListener(CategoryListener<T> listener)
+    {
+        // The category never changes, so the listener is never notified
+    }
+
+    @Override
+    public String toString()
+    {
+        return name;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        Integer result = hashCode;
+        if (result == null)
+        {
+            result = CategoryEquality.hashCode(this);
+            hashCode = result;
+        }
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object object)
+    {
+        return CategoryEquality.equals(this, object);
+    }
+    
+}
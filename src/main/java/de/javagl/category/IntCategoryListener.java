@@ -0,0 +1,61 @@
+/*
+ * www.javagl.de - Category
+ *
+ * Copyright (c) 2012-2017 Marco Hutter - http://www.javagl.de
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.javagl.category;
+
+import java.util.EventListener;
+
+/**
+ * Interface for classes that want to be informed about elements that
+ * are added to or removed from an {@link IntCategory}, without the 
+ * elements being boxed.<br>
+ * <br>
+ * Like a {@link CategoryListener}, such a listener will receive the 
+ * events for changes in the {@link IntCategory} that it was added to, 
+ * as well as changes in one of its descendants. The listener will be 
+ * notified immediately, also when the change happens during a 
+ * {@link MutableCategory#batch(java.util.function.Consumer) batch}.
+ */
+public interface IntCategoryListener extends EventListener
+{
+    /**
+     * Will be called when elements have been added to an 
+     * {@link IntCategory}. The given array may not be modified.
+     * 
+     * @param category The category where the elements have been added
+     * @param elements The elements that have been added
+     */
+    void elementsAdded(IntCategory category, int[] elements);
+    
+    /**
+     * Will be called when elements have been removed from an 
+     * {@link IntCategory}. The given array may not be modified.
+     * 
+     * @param category The category where the elements have been removed
+     * @param elements The elements that have been removed
+     */
+    void elementsRemoved(IntCategory category, int[] elements);
+}
@@ -0,0 +1,154 @@
+/*
+ * www.javagl.de - Category
+ *
+ * Copyright (c) 2012-2017 Marco Hutter - http://www.javagl.de
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.javagl.category;
+
+import java.util.List;
+import java.util.PrimitiveIterator;
+import java.util.function.LongConsumer;
+
+/**
+ * Interface for a {@link MutableCategory} that stores <code>long</code> 
+ * elements in primitive arrays. The elements can be added, removed, 
+ * iterated and observed without boxing. The methods that are inherited 
+ * from {@link MutableCategory} operate on boxed {@link Long} 
+ * objects. The elements of such a category can not be 
+ * <code>null</code>.<br>
+ * <br>
+ * All children of such a category are {@link LongCategory} instances 
+ * as well. Instances of this class may be created with
+ * {@link Categories#createLongCategory(String)}.
+ */
+public interface LongCategory extends MutableCategory<Long>
+{
+    /**
+     * Add the given elements to this {@link Category}. Listeners
+     * will be informed with a single event.
+     * 
+     * @param elements The elements to add
+     * @return Whether this {@link Category} changed
+     */
+    boolean addElements(long[] elements);
+    
+    /**
+     * Remove the given elements from this {@link Category}. For each 
+     * occurrence of an element in the given array, one occurrence of 
+     * this element will be removed from this category. Listeners will 
+     * be informed with a single event.
+     * 
+     * @param elements The elements to remove
+     * @return Whether this {@link Category} changed
+     */
+    boolean removeElements(long[] elements);
+    
+    /**
+     * Returns whether this {@link Category} contains the given element.
+     * 
+     * @param element The element
+     * @return Whether the element is contained in this category
+     */
+    boolean containsElement(long element);
+    
+    /**
+     * Returns the number of elements in this {@link Category}
+     * 
+     * @return The number of elements
+     */
+    int getElementCount();
+    
+    /**
+     * Returns a new array containing the elements of this 
+     * {@link Category}
+     * 
+     * @return The elements
+     */
+    long[] toElementArray();
+    
+    /**
+     * Pass each element of this {@link Category} to the given consumer.
+     * The consumer may not modify this category.
+     * 
+     * @param consumer The consumer
+     */
+    void forEachElement(LongConsumer consumer);
+    
+    /**
+     * Returns an iterator over the elements of this {@link Category}.
+     * The behavior of the iterator is not specified when this category 
+     * is modified while the iterator is used.
+     * 
+     * @return The iterator
+     */
+    PrimitiveIterator.OfLong elementIterator();
+    
+    /**
+     * Add the given {@link LongCategoryListener} to be informed about 
+     * elements that are added to or removed from this category 
+     * <b>or any of its children</b>.
+     * 
+     * @param listener The listener to add
+     */
+    void addLongCategoryListener(LongCategoryListener listener);
+    
+    /**
+     * Remove the given {@link LongCategoryListener} from this category
+     * 
+     * @param listener The listener to remove
+     */
+    void removeLongCategoryListener(LongCategoryListener listener);
+    
+    /**
+     * {@inheritDoc}
+     * 
+     * This method specifies the return type to be a {@link LongCategory}
+     */
+    @Override
+    LongCategory addChild(String name);
+    
+    /**
+     * {@inheritDoc}
+     * 
+     * This method specifies the return type to be a {@link LongCategory}
+     */
+    @Override
+    LongCategory removeChild(String name);
+    
+    /**
+     * {@inheritDoc}
+     * 
+     * This method specifies the return type to be a {@link LongCategory}
+     */
+    @Override
+    List<? extends LongCategory> getChildren();
+    
+    /**
+     * {@inheritDoc}
+     * 
+     * This method specifies the return type to be a {@link LongCategory}
+     */
+    @Override
+    LongCategory getChild(String name);
+}
@@ -0,0 +1,304 @@
+/*
+ * www.javagl.de - Category
+ *
+ * Copyright (c) 2012-2017 Marco Hutter - http://www.javagl.de
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.javagl.category;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Implementation of a {@link Category} that is decoded lazily from a 
+ * buffer that was written by a {@link CategoryCodec}. The name of the
+ * category is decoded when the instance is created. The children and 
+ * the elements are decoded when they are accessed for the first time.
+ * <br>
+ * <br>
+ * The categories never change, and may therefore be shared among 
+ * threads without synchronization. Listeners that are added to such 
+ * a category will never be notified.<br>
+ * <br>
+ * The offsets, name indices and counts are validated when they are
+ * decoded. Since the decoding happens lazily, an invalid buffer may
+ * cause an <code>IllegalStateException</code> when the children or 
+ * elements of a category are accessed.
+ * 
+ * @param <T> The type of the elements in this {@link Category}
+ */
+final class MappedCategory<T> implements Category<T>
+{
+    /**
+     * The buffer containing the data. Only absolute read operations 
+     * are performed on this buffer, so that it may be shared among 
+     * all categories and threads.
+     */
+    private final ByteBuffer data;
+    
+    /**
+     * The names table
+     */
+    private final String[] names;
+    
+    /**
+     * The {@link CategoryElementSerializer} for the elements
+     */
+    private final CategoryElementSerializer<T> serializer;
+    
+    /**
+     * The offset of the end of the category data in the buffer. This is
+     * the offset of the names table.
+     */
+    private final int limit;
+    
+    /**
+     * The offset of this category in the buffer
+     */
+    private final int offset;
+    
+    /**
+     * The name of this category
+     */
+    private final String name;
+    
+    /**
+     * The unmodifiable list of children, which is decoded lazily
+     */
+    private volatile List<MappedCategory<T>> children;
+    
+    /**
+     * The mapping from names to children, which is created together 
+     * with the {@link #children}
+     */
+    private volatile Map<String, MappedCategory<T>> childMap;
+    
+    /**
+     * The unmodifiable list of elements, which is decoded lazily
+     */
+    private volatile List<T> elements;
+    
+    /**
+     * The hash code of this category, which is computed lazily
+     */
+    private volatile Integer hashCode;
+    
+    /**
+     * Creates a new instance
+     * 
+     * @param data The buffer containing the data
+     * @param names The names table
+     * @param serializer The {@link CategoryElementSerializer}
+     * @param limit The offset of the end of the category data
+     * @param offset The offset of this category in the buffer
+     * @throws IllegalStateException If the offset or the name index of
+     * the category are not valid
+     */
+    MappedCategory(ByteBuffer data, String[] names, 
+        CategoryElementSerializer<T> serializer, int limit, int offset)
+    {
+        this.data = data;
+        this.names = names;
+        this.serializer = serializer;
+        this.limit = limit;
+        this.offset = offset;
+        check(offset >= 0 && (long) offset + 12 <= limit, 
+            "Invalid category offset: " + offset);
+        int nameId = data.getInt(offset);
+        check(nameId >= 0 && nameId < names.length, 
+            "Invalid name index: " + nameId);
+        this.name = names[nameId];
+    }
+    
+    /**
+     * Make sure that the given condition holds for the data
+     * 
+     * @param condition The condition
+     * @param message The message for the exception
+     * @throws IllegalStateException If the condition is 
+     * <code>false</code>
+     */
+    private static void check(boolean condition, String message)
+    {
+        if (!condition)
+        {
+            throw new IllegalStateException("Corrupt data: " + message);
+        }
+    }
+    
+    /**
+     * Returns the number of children of this category, from the data
+     * 
+     * @return The number of children
+     * @throws IllegalStateException If the number is not valid
+     */
+    private int getNumChildren()
+    {
+        int numChildren = data.getInt(offset + 4);
+        check(numChildren >= 0 && 
+            (long) offset + 12 + (long) numChildren * 4 <= limit, 
+            "Invalid number of children: " + numChildren);
+        return numChildren;
+    }
+    
+    @Override
+    public String getName()
+    {
+        return name;
+    }
+
+    @Override
+    public List<MappedCategory<T>> getChildren()
+    {
+        List<MappedCategory<T>> result = children;
+        if (result == null)
+        {
+            int numChildren = getNumChildren();
+            List<MappedCategory<T>> list = 
+                new ArrayList<MappedCategory<T>>(numChildren);
+            for (int i = 0; i < numChildren; i++)
+            {
+                // The categories are written in post-order, so the 
+                // children must be located before their parent
+                int childOffset = data.getInt(offset + 8 + i * 4);
+                check(childOffset < offset, 
+                    "Invalid child offset: " + childOffset);
+                list.add(new MappedCategory<T>(
+                    data, names, serializer, limit, childOffset));
+            }
+            Map<String, MappedCategory<T>> map = 
+                new HashMap<String, MappedCategory<T>>();
+            for (int i = list.size() - 1; i >= 0; i--)
+            {
+                MappedCategory<T> child = list.get(i);
+                map.put(child.getName(), child);
+            }
+            // The map must be published before the list, because the
+            // presence of the list indicates that the map is available
+            childMap = map;
+            result = Collections.unmodifiableList(list);
+            children = result;
+        }
+        return result;
+    }
+
+    @Override
+    public MappedCategory<T> getChild(String name)
+    {
+        Map<String, MappedCategory<T>> map = childMap;
+        if (map == null)
+        {
+            getChildren();
+            map = childMap;
+        }
+        return map.get(name);
+    }
+
+    @Override
+    public List<T> getElements()
+    {
+        List<T> result = elements;
+        if (result == null)
+        {
+            int numChildren = getNumChildren();
+            ByteBuffer buffer = data.duplicate();
+            buffer.limit(limit);
+            buffer.position(offset + 8 + numChildren * 4);
+            int numElements = buffer.getInt();
+            check(numElements >= 0, 
+                "Invalid number of elements: " + numElements);
+            List<T> list = new ArrayList<T>(
+                Math.min(numElements, buffer.remaining()));
+            try
+            {
+                for (int i = 0; i < numElements; i++)
+                {
+                    list.add(serializer.read(buffer));
+                }
+            }
+            catch (RuntimeException e)
+            {
+                // Any exception from the serializer, for example, a
+                // BufferUnderflowException, indicates corrupt data
+                throw new IllegalStateException(
+                    "Corrupt data: Invalid elements", e);
+            }
+            result = Collections.unmodifiableList(list);
+            elements = result;
+        }
+        return result;
+    }
+
+    @Override
+    public boolean containsElement(Object element)
+    {
+        return getElements().contains(element);
+    }
+
+    @Override
+    public void addCategoryListener(CategoryListener<T> listener)
+    {
+        // The category never changes, so the listener is never notified
+    }
+
+    @Override
+    public void addCategoryListener(
+        CategoryListener<T> listener, CategoryEventFilter filter)
+    {
+        // The category never changes, so the listener is never notified
+    }
+
+    @Override
+    public void removeCategoryListener(CategoryListener<T> listener)
+    {
+        // The category never changes, so the listener is never notified
+    }
+
+    @Override
+    public String toString()
+    {
+        return name;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        Integer result = hashCode;
+        if (result == null)
+        {
+            result = CategoryEquality.hashCode(this);
+            hashCode = result;
+        }
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object object)
+    {
+        return CategoryEquality.equals(this, object);
+    }
+}
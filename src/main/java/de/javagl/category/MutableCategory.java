@@ -1,105 +1,141 @@
-/*
- * www.javagl.de - Category
- *
- * Copyright (c) 2012-2017 Marco Hutter - http://www.javagl.de
- * 
- * Permission is hereby granted, free of charge, to any person
- * obtaining a copy of this software and associated documentation
- * files (the "Software"), to deal in the Software without
- * restriction, including without limitation the rights to use,
- * copy, modify, merge, publish, distribute, sublicense, and/or sell
- * copies of the Software, and to permit persons to whom the
- * Software is furnished to do so, subject to the following
- * conditions:
- * 
- * The above copyright notice and this permission notice shall be
- * included in all copies or substantial portions of the Software.
- * 
- * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
- * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
- * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
- * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
- * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
- * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
- * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
- * OTHER DEALINGS IN THE SOFTWARE.
- */
-package de.javagl.category;
-
-import java.util.List;
-
-/**
- * Interface for a mutable {@link Category}
- *
- * @param <T> The type of elements in this category
- */
-public interface MutableCategory<T> extends Category<T>
-{
-    /**
-     * Add a new child {@link Category} with the given name and
-     * return it. If such a child already exists, it will be
-     * returned.
-     * 
-     * @param name The name of the child {@link Category}
-     * @return The child {@link Category} with the given name
-     */
-    MutableCategory<T> addChild(String name);
-    
-    /**
-     * Remove the child {@link Category} with the given name. 
-     * 
-     * @param name The name of the child {@link Category} to remove
-     * @return The removed child {@link Category}, or <code>null</code>
-     * if there was not child with the given name
-     */
-    MutableCategory<T> removeChild(String name);
-
-    /**
-     * Remove all children from this {@link Category}. This will
-     * not cause any elements to be removed.
-     */
-    void removeAllChildren();
-    
-    /**
-     * Add the given elements to this {@link Category}
-     * 
-     * @param elements The element to add
-     * @return Whether this {@link Category} changed through this
-     * action (that is, whether at least one of the elements was 
-     * not yet present)
-     */
-    boolean addElements(Iterable<? extends T> elements);
-    
-    /**
-     * Remove the given elements from this {@link Category}
-     * 
-     * @param elements The elements to remove
-     * @return Whether this {@link Category} changed through this
-     * action (that is, whether at least one of the elements was 
-     * previously contained in this {@link Category})
-     */
-    boolean removeElements(Iterable<? extends T> elements);
-    
-    /**
-     * Remove all elements from this {@link Category}. This will
-     * not cause any children to be removed.
-     */
-    void removeAllElements();
-    
-    /**
-     * {@inheritDoc}
-     * 
-     * This method specifies the return type to be a {@link MutableCategory}
-     */
-    @Override
-    List<? extends MutableCategory<T>> getChildren();
-    
-    /**
-     * {@inheritDoc}
-     * 
-     * This method specifies the return type to be a {@link MutableCategory}
-     */
-    @Override
-    MutableCategory<T> getChild(String name);
-    
-}
+/*
+ * www.javagl.de - Category
+ *
+ * Copyright (c) 2012-2017 Marco Hutter - http://www.javagl.de
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.javagl.category;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Interface for a mutable {@link Category}
+ *
+ * @param <T> The type of elements in this category
+ */
+public interface MutableCategory<T> extends Category<T>
+{
+    /**
+     * Add a new child {@link Category} with the given name and
+     * return it. If such a child already exists, it will be
+     * returned.
+     * 
+     * @param name The name of the child {@link Category}
+     * @return The child {@link Category} with the given name
+     */
+    MutableCategory<T> addChild(String name);
+    
+    /**
+     * Remove the child {@link Category} with the given name. 
+     * 
+     * @param name The name of the child {@link Category} to remove
+     * @return The removed child {@link Category}, or <code>null</code>
+     * if there was not child with the given name
+     */
+    MutableCategory<T> removeChild(String name);
+
+    /**
+     * Remove all children from this {@link Category}. This will
+     * not cause any elements to be removed. Listeners will be 
+     * informed about the removal of all children with a single
+     * event.
+     */
+    void removeAllChildren();
+    
+    /**
+     * Add the given elements to this {@link Category}. The 
+     * {@link CategoryEvent} that informs the listeners about the added
+     * elements will contain a copy of the elements, so the given 
+     * sequence may be modified after this method returned.
+     * 
+     * @param elements The element to add
+     * @return Whether this {@link Category} changed through this
+     * action (that is, whether at least one of the elements was 
+     * not yet present)
+     */
+    boolean addElements(Iterable<? extends T> elements);
+    
+    /**
+     * Remove the given elements from this {@link Category}
+     * 
+     * @param elements The elements to remove
+     * @return Whether this {@link Category} changed through this
+     * action (that is, whether at least one of the elements was 
+     * previously contained in this {@link Category})
+     */
+    boolean removeElements(Iterable<? extends T> elements);
+    
+    /**
+     * Remove all elements from this {@link Category}. This will
+     * not cause any children to be removed. Listeners will be 
+     * informed about the removal of all elements with a single
+     * event.
+     */
+    void removeAllElements();
+    
+    /**
+     * Passes this {@link Category} to the given action, and defers all
+     * events until the action returns. <br>
+     * <br>
+     * All events that are caused by modifications of categories on the 
+     * calling thread while the action is executed will be collected. 
+     * All events of the same type from the same category will be 
+     * coalesced into a single event, even when other categories have 
+     * been modified in between. When the action returns, or throws an
+     * exception, the coalesced events will be fired, in the order in 
+     * which the first of the respective modifications took place. <br>
+     * <br>
+     * When a child is removed from its parent during the action, then
+     * the events that have been collected until then will be fired 
+     * before the child is removed, so that the listeners of the 
+     * ancestors still receive the events of the removed child. <br>
+     * <br>
+     * When this method is called while the action of another batch is
+     * executed on the same thread, then the events will be fired when 
+     * the outermost batch is completed.
+     * 
+     * @param action The action that modifies this category
+     */
+    default void batch(Consumer<? super MutableCategory<T>> action)
+    {
+        CategoryBatch.run(this, action);
+    }
+    
+    /**
+     * {@inheritDoc}
+     * 
+     * This method specifies the return type to be a {@link MutableCategory}
+     */
+    @Override
+    List<? extends MutableCategory<T>> getChildren();
+    
+    /**
+     * {@inheritDoc}
+     * 
+     * This method specifies the return type to be a {@link MutableCategory}
+     */
+    @Override
+    MutableCategory<T> getChild(String name);
+    
+}
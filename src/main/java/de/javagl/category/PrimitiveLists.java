@@ -0,0 +1,121 @@
+/*
+ * www.javagl.de - Category
+ *
+ * Copyright (c) 2012-2017 Marco Hutter - http://www.javagl.de
+ * 
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.javagl.category;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Package-private utility methods for creating unmodifiable list views
+ * on primitive arrays. The elements will only be boxed when they are
+ * accessed.
+ */
+class PrimitiveLists
+{
+    /**
+     * Returns an unmodifiable list view on the given array. The hash
+     * code of the list is computed without boxing the elements.
+     * 
+     * @param array The array
+     * @return The list
+     */
+    static List<Integer> asList(final int[] array)
+    {
+        class IntList extends AbstractList<Integer> implements RandomAccess
+        {
+            @Override
+            public Integer get(int index)
+            {
+                return array[index];
+            }
+
+            @Override
+            public int size()
+            {
+                return array.length;
+            }
+            
+            @Override
+            public int hashCode()
+            {
+                int result = 1;
+                for (int element : array)
+                {
+                    result = 31 * result + Integer.hashCode(element);
+                }
+                return result;
+            }
+        }
+        return new IntList();
+    }
+    
+    /**
+     * Returns an unmodifiable list view on the given array. The hash
+     * code of the list is computed without boxing the elements.
+     * 
+     * @param array The array
+     * @return The list
+     */
+    static List<Long> asList(final long[] array)
+    {
+        class LongList extends AbstractList<Long> implements RandomAccess
+        {
+            @Override
+            public Long get(int index)
+            {
+                return array[index];
+            }
+
+            @Override
+            public int size()
+            {
+                return array.length;
+            }
+            
+            @Override
+            public int hashCode()
+            {
+                int result = 1;
+                for (long element : array)
+                {
+                    result = 31 * result + Long.hashCode(element);
+                }
+                return result;
+            }
+        }
+        return new LongList();
+    }
+    
+    /**
+     * Private constructor to prevent instantiation
+     */
+    private PrimitiveLists()
+    {
+        // Private constructor to prevent instantiation
+    }
+}
@@ -1,6 +1,6 @@
-/**
- * Classes and interfaces related to the management of 
- * {@link de.javagl.category.Category Category} objects.
- */
-package de.javagl.category;
-
+/**
+ * Classes and interfaces related to the management of 
+ * {@link de.javagl.category.Category Category} objects.
+ */
+package de.javagl.category;
+
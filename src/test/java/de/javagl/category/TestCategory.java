@@ -1,87 +1,1108 @@
-package de.javagl.category;
-
-import static org.junit.Assert.assertEquals;
-
-import java.util.Arrays;
-
-import org.junit.Test;
-import org.junit.runner.RunWith;
-import org.junit.runners.JUnit4;
-
-@SuppressWarnings("javadoc")
-@RunWith(JUnit4.class)
-public class TestCategory
-{
-    @Test(expected=NullPointerException.class)
-    public void testNullNameThrows() 
-    {
-        Categories.create(null);
-    }
-    @Test(expected=NullPointerException.class)
-    public void testNullChildNameThrows() 
-    {
-        MutableCategory<Object> category = Categories.create("Root");
-        category.addChild(null);
-    }
-    
-    @Test
-    public void testElements() 
-    {
-        MutableCategory<Object> category = Categories.create("Root");
-        CollectingCategoryListener listener = new CollectingCategoryListener();
-        category.addCategoryListener(listener);
-        
-        category.addElements(Arrays.asList(0,1,2,3));
-        assertEquals(1, listener.elementsAddedEvents.size());
-        
-        category.removeElements(Arrays.asList(1,2));
-        assertEquals(1, listener.elementsRemovedEvents.size());
-        
-        assertEquals(Arrays.asList(0,3), category.getElements());
-    }
-    
-    @Test
-    public void testChildren() 
-    {
-        MutableCategory<Object> category = Categories.create("Root");
-        CollectingCategoryListener listener = new CollectingCategoryListener();
-        category.addCategoryListener(listener);
-        
-        category.addChild("ChildA");
-        assertEquals(1, listener.childAddedEvents.size());
-
-        MutableCategory<Object> childB = category.addChild("ChildB");
-        assertEquals(2, listener.childAddedEvents.size());
-
-        category.removeChild("ChildA");
-        assertEquals(1, listener.childRemovedEvents.size());
-        
-        assertEquals(Arrays.asList(childB), category.getChildren());
-    }
-    
-    @Test
-    public void testDeepListening() 
-    {
-        MutableCategory<Object> category = Categories.create("Root");
-        CollectingCategoryListener listener = new CollectingCategoryListener();
-        category.addCategoryListener(listener);
-        
-        MutableCategory<Object> childA = category.addChild("ChildA");
-        assertEquals(1, listener.childAddedEvents.size());
-
-        MutableCategory<Object> childA0 = childA.addChild("ChildA0");
-        MutableCategory<Object> childA1 = childA.addChild("ChildA1");
-        assertEquals(3, listener.childAddedEvents.size());
-
-        childA0.addElements(Arrays.asList(0,1));
-        assertEquals(1, listener.elementsAddedEvents.size());
-        
-        childA1.addElements(Arrays.asList(0,1));
-        assertEquals(2, listener.elementsAddedEvents.size());
-    }
-    
-    
-
-    
-    
-}
+package de.javagl.category;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@SuppressWarnings("javadoc")
+@RunWith(JUnit4.class)
+public class TestCategory
+{
+    @Test(expected=NullPointerException.class)
+    public void testNullNameThrows() 
+    {
+        Categories.create(null);
+    }
+    @Test(expected=NullPointerException.class)
+    public void testNullChildNameThrows() 
+    {
+        MutableCategory<Object> category = Categories.create("Root");
+        category.addChild(null);
+    }
+    
+    @Test
+    public void testElements() 
+    {
+        MutableCategory<Object> category = Categories.create("Root");
+        CollectingCategoryListener listener = new CollectingCategoryListener();
+        category.addCategoryListener(listener);
+        
+        category.addElements(Arrays.asList(0,1,2,3));
+        assertEquals(1, listener.elementsAddedEvents.size());
+        
+        category.removeElements(Arrays.asList(1,2));
+        assertEquals(1, listener.elementsRemovedEvents.size());
+        
+        assertEquals(Arrays.asList(0,3), category.getElements());
+    }
+    
+    @Test
+    public void testElementsSnapshot() 
+    {
+        MutableCategory<Object> category = Categories.create("Root");
+        category.addElements(Arrays.asList(0,1,2));
+        
+        List<Object> elements = category.getElements();
+        assertSame(elements, category.getElements());
+        
+        category.addElements(Arrays.asList(3));
+        assertEquals(Arrays.asList(0,1,2), elements);
+        assertEquals(Arrays.asList(0,1,2,3), category.getElements());
+    }
+    
+    @Test
+    public void testUniqueElements() 
+    {
+        MutableCategory<Object> category = 
+            Categories.createWithUniqueElements("Root");
+        CollectingCategoryListener listener = new CollectingCategoryListener();
+        category.addCategoryListener(listener);
+        
+        assertTrue(category.addElements(Arrays.asList(0,1,2)));
+        assertFalse(category.addElements(Arrays.asList(1,2)));
+        assertEquals(1, listener.elementsAddedEvents.size());
+        assertTrue(category.containsElement(1));
+        
+        assertTrue(category.addElements(Arrays.asList(2,3)));
+        assertEquals(2, listener.elementsAddedEvents.size());
+        assertEquals(new LinkedHashSet<Object>(Arrays.asList(3)), 
+            listener.elementsAddedEvents.get(1).getElements());
+        assertTrue(category.removeElements(Arrays.asList(3)));
+        
+        assertTrue(category.removeElements(Arrays.asList(1)));
+        assertFalse(category.containsElement(1));
+        assertEquals(Arrays.asList(0,2), category.getElements());
+        
+        MutableCategory<Object> child = category.addChild("Child");
+        child.addElements(Arrays.asList(3,3));
+        assertEquals(Arrays.asList(3), child.getElements());
+    }
+    
+    @Test
+    public void testChildren() 
+    {
+        MutableCategory<Object> category = Categories.create("Root");
+        CollectingCategoryListener listener = new CollectingCategoryListener();
+        category.addCategoryListener(listener);
+        
+        category.addChild("ChildA");
+        assertEquals(1, listener.childAddedEvents.size());
+
+        MutableCategory<Object> childB = category.addChild("ChildB");
+        assertEquals(2, listener.childAddedEvents.size());
+
+        category.removeChild("ChildA");
+        assertEquals(1, listener.childRemovedEvents.size());
+        
+        assertEquals(Arrays.asList(childB), category.getChildren());
+    }
+    
+    @Test
+    public void testRemoveAll() 
+    {
+        MutableCategory<Object> category = Categories.create("Root");
+        category.addElements(Arrays.asList(0,1,1,2,1));
+        MutableCategory<Object> childA = category.addChild("ChildA");
+        MutableCategory<Object> childB = category.addChild("ChildB");
+        CollectingCategoryListener listener = new CollectingCategoryListener();
+        category.addCategoryListener(listener);
+        
+        category.removeElements(Arrays.asList(1,1,3));
+        assertEquals(Arrays.asList(0,2,1), category.getElements());
+        assertEquals(1, listener.elementsRemovedEvents.size());
+        
+        category.removeAllElements();
+        assertTrue(category.getElements().isEmpty());
+        assertEquals(2, listener.elementsRemovedEvents.size());
+        
+        category.removeAllChildren();
+        assertTrue(category.getChildren().isEmpty());
+        assertEquals(1, listener.childRemovedEvents.size());
+        assertEquals(Arrays.asList(childA, childB), 
+            listener.childRemovedEvents.get(0).getChildren());
+        
+        childA.addElements(Arrays.asList(0));
+        assertEquals(0, listener.elementsAddedEvents.size());
+    }
+    
+    @Test
+    public void testDeepListening() 
+    {
+        MutableCategory<Object> category = Categories.create("Root");
+        CollectingCategoryListener listener = new CollectingCategoryListener();
+        category.addCategoryListener(listener);
+        
+        MutableCategory<Object> childA = category.addChild("ChildA");
+        assertEquals(1, listener.childAddedEvents.size());
+
+        MutableCategory<Object> childA0 = childA.addChild("ChildA0");
+        MutableCategory<Object> childA1 = childA.addChild("ChildA1");
+        assertEquals(3, listener.childAddedEvents.size());
+
+        childA0.addElements(Arrays.asList(0,1));
+        assertEquals(1, listener.elementsAddedEvents.size());
+        
+        childA1.addElements(Arrays.asList(0,1));
+        assertEquals(2, listener.elementsAddedEvents.size());
+    }
+    
+    @Test
+    public void testChildOrder() 
+    {
+        MutableCategory<Object> category = Categories.create("Root");
+        MutableCategory<Object> childA = category.addChild("ChildA");
+        MutableCategory<Object> childB = category.addChild("ChildB");
+        MutableCategory<Object> childC = category.addChild("ChildC");
+        assertSame(childB, category.addChild("ChildB"));
+        assertSame(childC, category.getChild("ChildC"));
+        
+        category.removeChild("ChildB");
+        assertNull(category.getChild("ChildB"));
+        MutableCategory<Object> newChildB = category.addChild("ChildB");
+        
+        assertEquals(Arrays.asList(childA, childC, newChildB), 
+            category.getChildren());
+    }
+    
+    @Test
+    public void testIndex() 
+    {
+        MutableCategory<Object> category = Categories.create("Root");
+        category.addElements(Arrays.asList(0,1));
+        MutableCategory<Object> childA = category.addChild("ChildA");
+        childA.addElements(Arrays.asList(1,2));
+        CategoryIndex<Object> index = Categories.createIndex(category);
+        
+        assertEquals(2, index.getCategories(1).size());
+        assertTrue(index.getCategories(2).contains(childA));
+        
+        MutableCategory<Object> childA0 = childA.addChild("ChildA0");
+        childA0.addElements(Arrays.asList(3));
+        assertEquals(Arrays.asList(childA0), index.getCategories(3));
+        
+        category.removeElements(Arrays.asList(1));
+        assertEquals(Arrays.asList(childA), index.getCategories(1));
+        
+        category.removeChild("ChildA");
+        assertFalse(index.contains(1));
+        assertFalse(index.contains(3));
+        assertTrue(index.contains(0));
+        
+        category.addElements(Arrays.asList(4,4));
+        category.removeElements(Arrays.asList(4));
+        assertEquals(Arrays.asList(category), index.getCategories(4));
+        category.removeElements(Arrays.asList(4));
+        assertFalse(index.contains(4));
+    }
+    
+    @Test
+    public void testPaths() 
+    {
+        MutableCategory<Object> category = Categories.create("Root");
+        MutableCategory<Object> childA = category.addChild("ChildA");
+        CollectingCategoryListener listener = new CollectingCategoryListener();
+        category.addCategoryListener(listener);
+        
+        MutableCategory<Object> c = 
+            Categories.ensurePath(category, "ChildA/B/C/D");
+        assertEquals("D", c.getName());
+        assertEquals(1, listener.childAddedEvents.size());
+        assertSame(childA, 
+            listener.childAddedEvents.get(0).getCategory());
+        
+        assertSame(c, Categories.resolve(category, "ChildA/B/C/D"));
+        assertSame(category, Categories.resolve(category, ""));
+        assertNull(Categories.resolve(category, "ChildA/X"));
+        
+        CategoryPathResolver<Object> resolver = 
+            Categories.createPathResolver(category);
+        assertSame(c, resolver.resolve("ChildA/B/C/D"));
+        childA.removeChild("B");
+        assertNull(resolver.resolve("ChildA/B/C/D"));
+        
+        MutableCategory<Object> e = resolver.ensurePath("ChildA/E");
+        category.batch(r -> 
+        {
+            childA.removeChild("E");
+            assertNull(resolver.resolve("ChildA/E"));
+            assertNotSame(e, resolver.ensurePath("ChildA/E"));
+        });
+    }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void testEmptyPathNameThrows() 
+    {
+        MutableCategory<Object> category = Categories.create("Root");
+        Categories.ensurePath(category, "ChildA//B");
+    }
+    
+    @Test
+    public void testConcurrent() throws InterruptedException
+    {
+        final MutableCategory<Object> category = 
+            Categories.createConcurrent("Root");
+        final AtomicInteger addedEvents = new AtomicInteger();
+        category.addCategoryListener(new CollectingCategoryListener()
+        {
+            @Override
+            public void elementsAdded(CategoryEvent<Object> event)
+            {
+                addedEvents.incrementAndGet();
+            }
+        });
+        int numThreads = 8;
+        final int numElements = 1000;
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int t = 0; t < numThreads; t++)
+        {
+            final int index = t;
+            Thread thread = new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    MutableCategory<Object> child = 
+                        category.addChild("Child" + (index % 2));
+                    for (int i = 0; i < numElements; i++)
+                    {
+                        child.addElements(Arrays.asList(i));
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads)
+        {
+            thread.join();
+        }
+        assertEquals(2, category.getChildren().size());
+        int numAdded = 0;
+        for (Category<Object> child : category.getChildren())
+        {
+            numAdded += child.getElements().size();
+        }
+        assertEquals(numThreads * numElements, numAdded);
+        assertEquals(numThreads * numElements, addedEvents.get());
+        
+        MutableCategory<Object> child = category.getChild("Child0");
+        List<Object> snapshot = child.getElements();
+        child.addElements(Arrays.asList(-1));
+        assertEquals(numThreads / 2 * numElements, snapshot.size());
+        assertTrue(child.containsElement(-1));
+        assertTrue(child.getElements().contains(-1));
+        assertTrue(child.removeElements(Arrays.asList(-1)));
+        assertFalse(child.getElements().contains(-1));
+    }
+    
+    @Test
+    public void testSnapshot() 
+    {
+        MutableCategory<Object> category = Categories.create("Root");
+        MutableCategory<Object> childA = category.addChild("ChildA");
+        MutableCategory<Object> childB = category.addChild("ChildB");
+        childA.addElements(Arrays.asList(0,1));
+        childB.addElements(Arrays.asList(2,3));
+        
+        Category<Object> snapshot0 = Categories.snapshot(category);
+        assertEquals(category, snapshot0);
+        assertSame(snapshot0, Categories.snapshot(category));
+        
+        childB.addElements(Arrays.asList(4));
+        Category<Object> snapshot1 = Categories.snapshot(category);
+        assertEquals(category, snapshot1);
+        assertEquals(Arrays.asList(2,3), 
+            snapshot0.getChild("ChildB").getElements());
+        assertSame(snapshot0.getChild("ChildA"), 
+            snapshot1.getChild("ChildA"));
+        
+        category.removeChild("ChildB");
+        childB.addElements(Arrays.asList(5));
+        Category<Object> snapshot2 = Categories.snapshot(category);
+        assertNull(snapshot2.getChild("ChildB"));
+        assertSame(snapshot0.getChild("ChildA"), 
+            snapshot2.getChild("ChildA"));
+    }
+    
+    @Test
+    public void testEqualsAndHashCode() 
+    {
+        MutableCategory<Object> category = Categories.create("Root");
+        category.addChild("ChildA").addElements(Arrays.asList(0,1));
+        MutableCategory<Object> other = Categories.createConcurrent("Root");
+        other.addChild("ChildA").addElements(Arrays.asList(0,1));
+        
+        assertEquals(category, other);
+        assertEquals(category.hashCode(), other.hashCode());
+        
+        Category<Object> snapshot = Categories.snapshot(category);
+        category.getChild("ChildA").addElements(Arrays.asList(2));
+        assertFalse(category.equals(other));
+        assertFalse(category.equals(snapshot));
+        assertFalse(category.hashCode() == snapshot.hashCode());
+        
+        other.getChild("ChildA").addElements(Arrays.asList(2));
+        assertEquals(category, other);
+        assertEquals(category.hashCode(), other.hashCode());
+    }
+    
+    @Test
+    public void testHashCodeDoesNotRehashAncestorElements() 
+    {
+        final AtomicInteger hashCodeCalls = new AtomicInteger();
+        Object element = new Object()
+        {
+            @Override
+            public int hashCode()
+            {
+                hashCodeCalls.incrementAndGet();
+                return 1;
+            }
+        };
+        MutableCategory<Object> category = Categories.create("Root");
+        category.addElements(Arrays.asList(element));
+        MutableCategory<Object> child = category.addChild("Child");
+        int hashCode0 = category.hashCode();
+        assertEquals(1, hashCodeCalls.get());
+        
+        child.addElements(Arrays.asList(0));
+        assertFalse(hashCode0 == category.hashCode());
+        assertEquals(1, hashCodeCalls.get());
+    }
+    
+    @Test
+    public void testStreamElements() 
+    {
+        CategoriesBuilder<Integer> b = Categories.createBuilder("Root");
+        b.addAll(Arrays.asList(0,1,2));
+        for (int i = 0; i < 10; i++)
+        {
+            for (int j = 0; j < 10; j++)
+            {
+                b.get("Child" + i).get("Child" + j).addAll(
+                    Arrays.asList(i * 100 + j, i * 100 + j, 1));
+            }
+        }
+        Category<Integer> category = b.get();
+        
+        List<Integer> expected = new ArrayList<Integer>(
+            Categories.getAllElements(category));
+        assertEquals(expected, Categories.streamElements(category, true)
+            .collect(Collectors.toList()));
+        assertEquals(expected, Categories.streamElements(category, true)
+            .parallel().collect(Collectors.toList()));
+        assertEquals(303, Categories.streamElements(category)
+            .parallel().count());
+        assertEquals(Integer.valueOf(1), Categories.streamElements(category)
+            .skip(1).findFirst().get());
+    }
+    
+    @Test
+    public void testParallelReduce() 
+    {
+        CategoriesBuilder<Integer> b = Categories.createBuilder("Root");
+        for (int i = 0; i < 20; i++)
+        {
+            for (int j = 0; j < 20; j++)
+            {
+                b.get("Child" + i).get("Child" + j).addAll(
+                    Arrays.asList(i, j));
+            }
+        }
+        Category<Integer> category = b.get();
+        
+        int count = Categories.parallelReduce(category, 
+            c -> c.getElements().size(), Integer::sum);
+        assertEquals(800, count);
+        
+        Set<Integer> distinct = Categories.parallelReduce(category, 
+            c -> new HashSet<Integer>(c.getElements()), 
+            (s0, s1) -> { s0.addAll(s1); return s0; });
+        assertEquals(Categories.getAllElements(category), distinct);
+        
+        String names = Categories.parallelReduce(category, 
+            c -> c.getName(), (n0, n1) -> n0 + "," + n1);
+        assertTrue(names.startsWith("Root,Child0,Child0,Child1,"));
+    }
+    
+    @Test
+    public void testBatch() 
+    {
+        MutableCategory<Object> category = Categories.create("Root");
+        CollectingCategoryListener listener = new CollectingCategoryListener();
+        category.addCategoryListener(listener);
+        
+        category.batch(c -> 
+        {
+            for (int i = 0; i < 10; i++)
+            {
+                c.addChild("ChildA").addElements(Arrays.asList(i));
+                c.addChild("ChildB").addElements(Arrays.asList(i));
+            }
+            c.getChild("ChildA").removeElements(Arrays.asList(0));
+            assertEquals(0, listener.elementsAddedEvents.size());
+        });
+        assertEquals(1, listener.childAddedEvents.size());
+        assertEquals(2, 
+            listener.childAddedEvents.get(0).getChildren().size());
+        assertEquals(2, listener.elementsAddedEvents.size());
+        assertEquals(10, 
+            listener.elementsAddedEvents.get(0).getElements().size());
+        assertEquals(1, listener.elementsRemovedEvents.size());
+    }
+    
+    @Test
+    public void testBatchOrderAndDetach() 
+    {
+        MutableCategory<Object> category = Categories.create("Root");
+        MutableCategory<Object> childA = category.addChild("ChildA");
+        MutableCategory<Object> childB = category.addChild("ChildB");
+        List<String> received = new ArrayList<String>();
+        category.addCategoryListener(new CollectingCategoryListener()
+        {
+            @Override
+            public void elementsAdded(CategoryEvent<Object> event)
+            {
+                received.add(event.getCategory().getName() + 
+                    event.getElements());
+            }
+            
+            @Override
+            public void childRemoved(CategoryEvent<Object> event)
+            {
+                received.add("removed" + event.getChildren());
+            }
+        });
+        
+        category.batch(c -> 
+        {
+            childA.addElements(Arrays.asList(0));
+            childA.addElements(Arrays.asList(1));
+            childB.addElements(Arrays.asList(2));
+            childA.addElements(Arrays.asList(3));
+            c.removeChild("ChildA");
+            childA.addElements(Arrays.asList(4));
+        });
+        assertEquals(Arrays.asList("ChildA[0, 1, 3]", "ChildB[2]", 
+            "removed[ChildA]"), received);
+    }
+    
+    @Test
+    public void testAsynchronousListener() throws InterruptedException
+    {
+        MutableCategory<Object> category = Categories.create("Root");
+        CollectingCategoryListener listener = new CollectingCategoryListener();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        category.addCategoryListener(Categories.asynchronous(
+            listener, executor, 2, EventOverflowPolicy.COALESCE));
+        
+        for (int i = 0; i < 100; i++)
+        {
+            category.addElements(Arrays.asList(i));
+        }
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+        
+        int numElements = 0;
+        int previous = -1;
+        for (CategoryEvent<Object> event : listener.elementsAddedEvents)
+        {
+            for (Object element : event.getElements())
+            {
+                assertTrue((Integer) element > previous);
+                previous = (Integer) element;
+                numElements++;
+            }
+        }
+        assertEquals(100, numElements);
+    }
+    
+    @Test
+    public void testAsynchronousListenerRejected()
+    {
+        MutableCategory<Object> category = Categories.create("Root");
+        CollectingCategoryListener listener = new CollectingCategoryListener();
+        AtomicInteger rejections = new AtomicInteger(1);
+        Executor executor = command -> 
+        {
+            if (rejections.getAndDecrement() > 0)
+            {
+                throw new RejectedExecutionException();
+            }
+            command.run();
+        };
+        category.addCategoryListener(Categories.asynchronous(
+            listener, executor, 1, EventOverflowPolicy.BLOCK));
+        
+        try
+        {
+            category.addElements(Arrays.asList(0));
+            fail("Expected a RejectedExecutionException");
+        }
+        catch (RejectedExecutionException e)
+        {
+            // Expected
+        }
+        category.addElements(Arrays.asList(1));
+        category.addElements(Arrays.asList(2));
+        assertEquals(2, listener.elementsAddedEvents.size());
+        assertEquals(Collections.singleton(1), 
+            listener.elementsAddedEvents.get(0).getElements());
+    }
+    
+    @Test
+    public void testEventElements() 
+    {
+        MutableCategory<Object> category = Categories.create("Root");
+        
+        final List<Object> elements = new ArrayList<Object>();
+        elements.addAll(Arrays.asList(0,1,2));
+        final AtomicInteger iterations = new AtomicInteger();
+        Iterable<Object> iterable = new Iterable<Object>()
+        {
+            @Override
+            public Iterator<Object> iterator()
+            {
+                iterations.incrementAndGet();
+                return elements.iterator();
+            }
+        };
+        category.addElements(iterable);
+        assertEquals(1, iterations.get());
+        
+        CollectingCategoryListener listener = new CollectingCategoryListener();
+        category.addCategoryListener(listener);
+        category.addElements(iterable);
+        assertEquals(2, iterations.get());
+        elements.clear();
+        
+        CategoryEvent<Object> event = listener.elementsAddedEvents.get(0);
+        assertEquals(new HashSet<Object>(Arrays.asList(0,1,2)), 
+            event.getElements());
+        assertEquals(2, iterations.get());
+    }
+    
+    @Test
+    public void testFilteredListener() 
+    {
+        MutableCategory<Object> root = Categories.create("Root");
+        MutableCategory<Object> a = Categories.ensurePath(root, "A");
+        MutableCategory<Object> ab = Categories.ensurePath(root, "A/B");
+        MutableCategory<Object> c = Categories.ensurePath(root, "C");
+        
+        CollectingCategoryListener listener = new CollectingCategoryListener();
+        root.addCategoryListener(listener, CategoryEventFilter.all()
+            .withTypes(CategoryEventType.ELEMENTS_ADDED)
+            .withPath("A")
+            .withMaxDepth(1));
+        
+        a.addElements(Arrays.<Object>asList("a"));
+        ab.addElements(Arrays.<Object>asList("ab"));
+        c.addElements(Arrays.<Object>asList("c"));
+        a.removeElements(Arrays.<Object>asList("a"));
+        a.addChild("D");
+        
+        assertEquals(1, listener.elementsAddedEvents.size());
+        assertEquals(a, listener.elementsAddedEvents.get(0).getCategory());
+        assertTrue(listener.elementsRemovedEvents.isEmpty());
+        assertTrue(listener.childAddedEvents.isEmpty());
+    }
+    
+    @Test
+    public void testFilteringListener() 
+    {
+        MutableCategory<Object> root = Categories.create("Root");
+        MutableCategory<Object> a = Categories.ensurePath(root, "A");
+        MutableCategory<Object> ab = Categories.ensurePath(root, "A/B");
+        MutableCategory<Object> c = Categories.ensurePath(root, "C");
+        
+        CollectingCategoryListener listener = new CollectingCategoryListener();
+        FilteringCategoryListener<Object> filtering = 
+            new FilteringCategoryListener<Object>(
+                root, listener, CategoryEventFilter.all()
+                    .withTypes(CategoryEventType.ELEMENTS_ADDED)
+                    .withPath("A")
+                    .withMaxDepth(1));
+        root.addCategoryListener(filtering);
+        
+        a.addElements(Arrays.<Object>asList("a"));
+        ab.addElements(Arrays.<Object>asList("ab"));
+        c.addElements(Arrays.<Object>asList("c"));
+        a.removeElements(Arrays.<Object>asList("a"));
+        
+        assertEquals(1, listener.elementsAddedEvents.size());
+        assertEquals(a, listener.elementsAddedEvents.get(0).getCategory());
+        assertTrue(listener.elementsRemovedEvents.isEmpty());
+        
+        root.removeCategoryListener(filtering);
+        a.addElements(Arrays.<Object>asList("a"));
+        assertEquals(1, listener.elementsAddedEvents.size());
+        
+        CategoryEventFilter unrestricted = CategoryEventFilter.all()
+            .withTypes(CategoryEventType.ELEMENTS_ADDED);
+        assertTrue(unrestricted.matches(
+            CategoryEventType.ELEMENTS_ADDED, root, ab));
+        assertFalse(unrestricted.withMaxDepth(1).matches(
+            CategoryEventType.ELEMENTS_ADDED, root, ab));
+        assertTrue(unrestricted.withMaxDepth(2).matches(
+            CategoryEventType.ELEMENTS_ADDED, root, ab));
+    }
+    
+    @Test
+    public void testIntCategory() 
+    {
+        IntCategory root = Categories.createIntCategory("Root");
+        IntCategory child = root.addChild("Child");
+        
+        final List<int[]> added = new ArrayList<int[]>();
+        final List<int[]> removed = new ArrayList<int[]>();
+        root.addIntCategoryListener(new IntCategoryListener()
+        {
+            @Override
+            public void elementsAdded(IntCategory category, int[] elements)
+            {
+                added.add(elements);
+            }
+            
+            @Override
+            public void elementsRemoved(IntCategory category, int[] elements)
+            {
+                removed.add(elements);
+            }
+        });
+        
+        child.addElements(new int[] { 3, 1, 2, 1, 3 });
+        assertEquals(1, added.size());
+        assertTrue(child.containsElement(2));
+        assertTrue(child.containsElement((Object) 2));
+        
+        child.removeElements(new int[] { 1, 3, 4 });
+        assertEquals(1, removed.size());
+        assertEquals(2, removed.get(0).length);
+        assertEquals(Arrays.asList(2, 1, 3), child.getElements());
+        
+        root.addElements(new int[] { 5, 2 });
+        assertTrue(Arrays.equals(new int[] { 1, 2, 3, 5 }, 
+            Categories.getAllIntElements(root)));
+        
+        MutableCategory<Integer> boxed = Categories.create("Root");
+        boxed.addElements(Arrays.asList(5, 2));
+        boxed.addChild("Child").addElements(Arrays.asList(2, 1, 3));
+        assertEquals(boxed, root);
+        assertEquals(boxed.hashCode(), root.hashCode());
+    }
+    
+    @Test
+    public void testLongCategory() 
+    {
+        LongCategory root = Categories.createLongCategory("Root");
+        final List<CategoryEvent<Long>> events = 
+            new ArrayList<CategoryEvent<Long>>();
+        root.addCategoryListener(new CategoryListener<Long>()
+        {
+            @Override
+            public void elementsAdded(CategoryEvent<Long> event)
+            {
+                events.add(event);
+            }
+
+            @Override
+            public void elementsRemoved(CategoryEvent<Long> event)
+            {
+                events.add(event);
+            }
+
+            @Override
+            public void childAdded(CategoryEvent<Long> event)
+            {
+                // Not tested here
+            }
+
+            @Override
+            public void childRemoved(CategoryEvent<Long> event)
+            {
+                // Not tested here
+            }
+        });
+        
+        LongCategory child = root.addChild("Child");
+        child.addElements(new long[] { 1L << 40, 2L, 1L << 40 });
+        child.removeElements(Arrays.asList(1L << 40));
+        assertEquals(2, child.getElementCount());
+        assertTrue(Arrays.equals(new long[] { 2L, 1L << 40 }, 
+            child.toElementArray()));
+        assertTrue(Arrays.equals(new long[] { 2L, 1L << 40 }, 
+            Categories.getAllLongElements(root)));
+        assertEquals(2, events.size());
+        assertEquals(new HashSet<Long>(Arrays.asList(2L, 1L << 40)), 
+            events.get(0).getElements());
+        assertEquals(Collections.singleton(1L << 40), 
+            events.get(1).getElements());
+    }
+    
+    @Test
+    public void testCompact() 
+    {
+        MutableCategory<Object> root = Categories.create("Root");
+        Categories.ensurePath(root, "A/B").addElements(
+            Arrays.<Object>asList(1, 2));
+        Categories.ensurePath(root, "A/C").addElements(
+            Arrays.<Object>asList(3));
+        Categories.ensurePath(root, "B/A");
+        root.addElements(Arrays.<Object>asList(4, null));
+        
+        Category<Object> compact = Categories.compact(root);
+        assertEquals(root, compact);
+        assertEquals(compact, root);
+        assertEquals(root.hashCode(), compact.hashCode());
+        assertSame(compact, Categories.compact(compact));
+        
+        Category<Object> b = Categories.resolve(compact, "A/B");
+        assertEquals(Arrays.<Object>asList(1, 2), b.getElements());
+        assertEquals(b, compact.getChild("A").getChildren().get(0));
+        assertTrue(compact.containsElement(null));
+        assertFalse(compact.containsElement(1));
+        assertNull(Categories.resolve(compact, "A/A"));
+        assertNull(compact.getChild("X"));
+        assertEquals(Categories.toFormattedString(root), 
+            Categories.toFormattedString(compact));
+    }
+    
+    @Test
+    public void testNameDictionary() 
+    {
+        CategoryNameDictionary dictionary = Categories.createNameDictionary();
+        MutableCategory<Object> root = Categories.create("Root", dictionary);
+        MutableCategory<Object> first = 
+            Categories.ensurePath(root, new String("A/misc"));
+        MutableCategory<Object> second = 
+            Categories.ensurePath(root, new String("B/misc"));
+        assertSame(first.getName(), second.getName());
+        
+        CategoriesBuilder<Object> builder = 
+            Categories.createBuilder("Other", dictionary);
+        String name = builder.get(new String("misc")).get().getName();
+        assertSame(first.getName(), name);
+        assertEquals(5, dictionary.size());
+    }
+    
+    @Test
+    public void testCodec() throws IOException
+    {
+        MutableCategory<String> root = Categories.create("Root");
+        Categories.ensurePath(root, "A/misc").addElements(
+            Arrays.asList("x", null, "\u00e4"));
+        Categories.ensurePath(root, "B/misc").addElements(
+            Arrays.asList("y"));
+        root.addElements(Arrays.asList("z"));
+        
+        CategoryCodec<String> codec = 
+            Categories.createCodec(CategoryCodec.stringSerializer());
+        Path path = Files.createTempFile("category", ".bin");
+        try
+        {
+            codec.write(root, path);
+            Category<String> read = codec.read(path);
+            assertEquals("Root", read.getName());
+            assertEquals(Arrays.asList("y"), 
+                Categories.resolve(read, "B/misc").getElements());
+            assertEquals(root, read);
+            assertEquals(root.hashCode(), read.hashCode());
+        }
+        finally
+        {
+            Files.delete(path);
+        }
+    }
+    
+    @Test(expected = IllegalStateException.class)
+    public void testCodecCorruptChildOffset() throws IOException
+    {
+        MutableCategory<String> root = Categories.create("Root");
+        root.addChild("A");
+        
+        CategoryCodec<String> codec = 
+            Categories.createCodec(CategoryCodec.stringSerializer());
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        codec.write(root, outputStream);
+        ByteBuffer buffer = ByteBuffer.wrap(outputStream.toByteArray());
+        int rootOffset = buffer.getInt(buffer.limit() - 4);
+        buffer.putInt(rootOffset + 8, rootOffset);
+        
+        Category<String> read = codec.read(buffer);
+        read.getChildren();
+    }
+    
+    @Test(expected = IOException.class)
+    public void testCodecCorruptNames() throws IOException
+    {
+        MutableCategory<String> root = Categories.create("Root");
+        
+        CategoryCodec<String> codec = 
+            Categories.createCodec(CategoryCodec.stringSerializer());
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        codec.write(root, outputStream);
+        ByteBuffer buffer = ByteBuffer.wrap(outputStream.toByteArray());
+        int namesOffset = buffer.getInt(buffer.limit() - 8);
+        buffer.putInt(namesOffset, Integer.MAX_VALUE);
+        codec.read(buffer);
+    }
+    
+    @Test
+    public void testImporter() throws IOException
+    {
+        String text = 
+            "Animals/Mammals/Cat\tfelix\n" +
+            "Animals/Birds\ttweety\n" +
+            "\n" +
+            "Animals/Mammals/Cat\ttom\n" +
+            "\troot\n" +
+            "Animals/Birds\tpolly\n";
+        MutableCategory<Object> root = Categories.create("Root");
+        MutableCategory<Object> cat = 
+            Categories.ensurePath(root, "Animals/Mammals/Cat");
+        CollectingCategoryListener listener = new CollectingCategoryListener();
+        root.addCategoryListener(listener);
+        
+        CategoryImporter<Object> importer = 
+            Categories.createImporter(s -> s);
+        importer.setBufferSize(2);
+        long count = importer.importFrom(new StringReader(text), root);
+        
+        assertEquals(5, count);
+        assertEquals(Arrays.asList("felix", "tom"), cat.getElements());
+        assertEquals(Arrays.asList("tweety", "polly"), 
+            Categories.resolve(root, "Animals/Birds").getElements());
+        assertEquals(Arrays.asList("root"), root.getElements());
+        assertEquals(1, listener.childAddedEvents.size());
+        
+        // One event for each category in each of the three flushes
+        assertEquals(5, listener.elementsAddedEvents.size());
+    }
+    
+    @Test
+    public void testImporterFailureKeepsPrecedingLines() 
+    {
+        String text = 
+            "A\ta0\n" +
+            "B\tb0\n" +
+            "invalid\n" +
+            "A\ta1\n";
+        MutableCategory<Object> root = Categories.create("Root");
+        CategoryImporter<Object> importer = 
+            Categories.createImporter(s -> s);
+        try
+        {
+            importer.importFrom(new StringReader(text), root);
+            fail("Expected an IOException");
+        }
+        catch (IOException e)
+        {
+            // Expected
+        }
+        assertEquals(Arrays.asList("a0"), root.getChild("A").getElements());
+        assertEquals(Arrays.asList("b0"), root.getChild("B").getElements());
+    }
+    
+    @Test
+    public void testRenderer() throws IOException
+    {
+        MutableCategory<Object> root = Categories.create("Root");
+        Categories.ensurePath(root, "A/B").addElements(
+            Arrays.<Object>asList(1, 2, 3));
+        Categories.ensurePath(root, "C");
+        
+        String expected = 
+            "Root\n" +
+            "+-A\n" +
+            "| +-B\n" +
+            "|   |-1\n" +
+            "|   |-2\n" +
+            "|   |-3\n" +
+            "+-C\n";
+        assertEquals(expected, Categories.toFormattedString(root));
+        
+        StringBuilder sb = new StringBuilder();
+        Categories.createRenderer()
+            .setMaxElements(1)
+            .setElementFormatter(e -> "#" + e)
+            .render(Categories.resolve(root, "A"), sb);
+        String expectedLimited = 
+            "A\n" +
+            "+-B\n" +
+            "  |-#1\n" +
+            "  |-... (2 more elements)\n";
+        assertEquals(expectedLimited, sb.toString());
+        
+        String expectedShallow = 
+            "Root\n" +
+            "+-... (2 children)\n";
+        assertEquals(expectedShallow, 
+            Categories.createRenderer().setMaxDepth(0).render(root));
+    }
+    
+    @Test
+    public void testBuilderBulkOperations() 
+    {
+        CategoriesBuilder<Object> builder = Categories.createBuilder("Root");
+        CollectingCategoryListener listener = new CollectingCategoryListener();
+        builder.get().addCategoryListener(listener);
+        
+        assertSame(builder.get("A"), builder.get("A"));
+        builder.addAll("A/B", Arrays.<Object>asList(1, 2));
+        assertEquals(1, listener.elementsAddedEvents.size());
+        
+        builder.addIfUncategorized("Other", Arrays.<Object>asList(1, 3, 4));
+        assertEquals(2, listener.elementsAddedEvents.size());
+        assertEquals(Arrays.<Object>asList(3, 4), 
+            builder.get("Other").get().getElements());
+        
+        Map<String, List<Object>> elementsByPath = 
+            new LinkedHashMap<String, List<Object>>();
+        elementsByPath.put("C", Arrays.<Object>asList(5));
+        elementsByPath.put("A/B", Arrays.<Object>asList(6));
+        builder.addAll(elementsByPath);
+        assertEquals(Arrays.<Object>asList(1, 2, 6), 
+            Categories.resolve(builder.get(), "A/B").getElements());
+        assertEquals(4, listener.elementsAddedEvents.size());
+    }
+    
+    @Test
+    public void testGroupingBy() 
+    {
+        List<Integer> input = new ArrayList<Integer>();
+        for (int i = 0; i < 100000; i++)
+        {
+            input.add(i);
+        }
+        Function<Integer, String> pathFunction = 
+            i -> i % 10 == 0 ? "" : "M" + (i % 7) + "/M" + (i % 3);
+        
+        MutableCategory<Integer> expected = Categories.create("Root");
+        for (Integer i : input)
+        {
+            Categories.ensurePath(expected, pathFunction.apply(i))
+                .addElements(Collections.singletonList(i));
+        }
+        MutableCategory<Integer> sequential = input.stream().collect(
+            Categories.groupingBy(pathFunction, "Root"));
+        assertEquals(expected, sequential);
+        
+        MutableCategory<Integer> parallel = input.parallelStream().collect(
+            Categories.groupingBy(pathFunction, "Root"));
+        assertEquals(Categories.toFormattedString(expected), 
+            Categories.toFormattedString(parallel));
+    }
+    
+    @Test
+    public void testParallelMerge() 
+    {
+        MutableCategory<Object> source = Categories.create("Root");
+        for (int i = 0; i < 1000; i++)
+        {
+            Categories.ensurePath(source, "A" + (i % 10) + "/B" + (i % 7))
+                .addElements(Arrays.<Object>asList(i % 50, i % 50));
+        }
+        source.addElements(Arrays.<Object>asList(1, 2));
+        
+        MutableCategory<Object> expected = Categories.create("Root");
+        Categories.ensurePath(expected, "A0/B0").addElements(
+            Arrays.<Object>asList(0));
+        expected.addElements(Arrays.<Object>asList(1));
+        MutableCategory<Object> target = Categories.create("Root");
+        Categories.mergeRecursively(target, expected);
+        Categories.mergeRecursively(expected, source);
+        
+        CollectingCategoryListener listener = new CollectingCategoryListener();
+        target.addCategoryListener(listener);
+        Categories.mergeRecursively(target, source, MergeMode.APPEND);
+        assertEquals(expected, target);
+        assertEquals(2, listener.childAddedEvents.size());
+        assertEquals(9 + 6, 
+            listener.childAddedEvents.get(0).getChildren().size() + 
+            listener.childAddedEvents.get(1).getChildren().size());
+        
+        MutableCategory<Object> distinct = Categories.create("Root");
+        distinct.addElements(Arrays.<Object>asList(1));
+        Categories.mergeRecursively(distinct, source, MergeMode.DISTINCT);
+        assertEquals(Arrays.<Object>asList(1, 2), distinct.getElements());
+        Category<Object> b = Categories.resolve(distinct, "A3/B3");
+        assertEquals(new HashSet<Object>(b.getElements()).size(), 
+            b.getElements().size());
+    }
+    
+    @Test
+    public void testDiff() 
+    {
+        MutableCategory<Object> category = Categories.create("Root");
+        Categories.ensurePath(category, "A/B").addElements(
+            Arrays.<Object>asList(1, 2, 3, 2));
+        Categories.ensurePath(category, "A/C").addElements(
+            Arrays.<Object>asList(4));
+        Categories.ensurePath(category, "D/E");
+        Categories.ensurePath(category, "F");
+        Categories.ensurePath(category, "G");
+        Category<Object> before = Categories.snapshot(category);
+        
+        Categories.resolve(category, "A/B").removeElements(
+            Arrays.<Object>asList(2));
+        Categories.resolve(category, "A/B").addElements(
+            Arrays.<Object>asList(5));
+        Categories.ensurePath(category, "D/X/Y").addElements(
+            Arrays.<Object>asList(6));
+        category.removeChild("F");
+        category.addChild("F");
+        category.addElements(Arrays.<Object>asList(7));
+        Category<Object> after = Categories.snapshot(category);
+        
+        CategoryDiff<Object> diff = Categories.diff(before, after);
+        assertFalse(diff.isEmpty());
+        for (CategoryDiff.Change<Object> change : diff.getChanges())
+        {
+            assertFalse(change.getPath().startsWith("A/C"));
+        }
+        
+        MutableCategory<Object> target = Categories.create("Root");
+        Categories.mergeRecursively(target, before);
+        diff.applyTo(target);
+        assertEquals(after, target);
+        assertTrue(Categories.diff(after, target).isEmpty());
+        
+        CategoryDiff<Object> reverse = Categories.diff(after, before);
+        reverse.applyTo(target);
+        assertEquals(before, target);
+    }
+}